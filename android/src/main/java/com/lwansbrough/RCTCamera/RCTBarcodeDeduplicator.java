@@ -0,0 +1,69 @@
+package com.lwansbrough.RCTCamera;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers recently emitted barcodes, so a barcode staying in view is only reported once.
+ *
+ * A barcode is reported again once it hasn't been seen for the time to live, or once it has been
+ * missing from `LEAVE_AFTER_FRAMES` consecutive scanned frames, i.e. it left the frame.
+ */
+class RCTBarcodeDeduplicator {
+    private static final int MAX_ENTRIES = 64;
+    private static final int LEAVE_AFTER_FRAMES = 5;
+
+    private final LinkedHashMap<String, Sighting> _sightings = new LinkedHashMap<String, Sighting>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Sighting> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private long _ttl = 0;
+    private long _frame = 0;
+
+    /**
+     * Suppress repeats seen within `ttl` milliseconds of the previous sighting, 0 disables the
+     * de-duplication.
+     */
+    public synchronized void setTimeToLive(long ttl) {
+        _ttl = ttl * 1000000;
+        if (ttl <= 0) {
+            _sightings.clear();
+        }
+    }
+
+    /**
+     * To be called once for every scanned frame, before `accept`.
+     */
+    public synchronized void onFrame() {
+        _frame++;
+    }
+
+    /**
+     * Whether the barcode should be emitted, false for a repeat.
+     */
+    public synchronized boolean accept(String format, String text, long now) {
+        if (_ttl <= 0) {
+            return true;
+        }
+
+        String key = format + ':' + text;
+        Sighting sighting = _sightings.get(key);
+        boolean repeat = sighting != null
+                && now - sighting.time <= _ttl
+                && _frame - sighting.frame <= LEAVE_AFTER_FRAMES;
+        if (sighting == null) {
+            sighting = new Sighting();
+            _sightings.put(key, sighting);
+        }
+        sighting.time = now;
+        sighting.frame = _frame;
+        return !repeat;
+    }
+
+    private static class Sighting {
+        long time;
+        long frame;
+    }
+}
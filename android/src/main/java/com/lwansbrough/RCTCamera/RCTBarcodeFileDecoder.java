@@ -0,0 +1,254 @@
+package com.lwansbrough.RCTCamera;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.multi.GenericMultipleBarcodeReader;
+import com.google.zxing.multi.qrcode.QRCodeMultiReader;
+
+/**
+ * Decodes the barcodes of stored images, e.g. pictures taken with `capture`.
+ *
+ * Files of every `decode` call are decoded on one shared pool of a worker per core, decoded
+ * subsampled so their longer side is at most `maxDimension` pixels. Memory stays bounded
+ * overall: a worker only decodes a file once the bitmap and pixels it needs fit in a quarter of
+ * the heap, along with those of the files being decoded.
+ */
+class RCTBarcodeFileDecoder {
+    private static final String TAG = "RCTBarcodeFileDecoder";
+
+    public static final int DEFAULT_MAX_DIMENSION = 2048;
+
+    // bytes per pixel of a decoded file: its RGB_565 bitmap and the ARGB copy zxing reads
+    private static final int BYTES_PER_PIXEL = 2 + 4;
+    // KB of the heap the files being decoded may use
+    private static final int MEMORY_BUDGET = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 4 / 1024);
+    private static final Semaphore ourMemory = new Semaphore(MEMORY_BUDGET, true);
+
+    private static final ThreadPoolExecutor ourExecutor;
+    static {
+        int workers = Runtime.getRuntime().availableProcessors();
+        ourExecutor = new ThreadPoolExecutor(workers, workers, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        // no idle threads between calls
+        ourExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Receives the results of each file as soon as it is decoded, on the worker that decoded it.
+     */
+    interface Listener {
+        /**
+         * `results` is empty if the file has no barcode, and null if it couldn't be read.
+         */
+        void onFileDecoded(int index, String path, Result[] results, Throwable error);
+
+        void onDone(int files, int decoded);
+    }
+
+    private final EnumMap<DecodeHintType, Object> _hints = new EnumMap<>(DecodeHintType.class);
+    private final int _maxDimension;
+    private final boolean _multiple;
+
+    // reader of each worker
+    private final ThreadLocal<Worker> _workers = new ThreadLocal<Worker>() {
+        @Override
+        protected Worker initialValue() {
+            return new Worker(_hints);
+        }
+    };
+
+    public RCTBarcodeFileDecoder(EnumSet<BarcodeFormat> formats, int maxDimension, boolean multiple) {
+        _hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+        // there is no next frame to catch a barcode in
+        _hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+        _maxDimension = maxDimension;
+        _multiple = multiple;
+    }
+
+    public void decode(final List<String> paths, final Listener listener) {
+        if (paths.isEmpty()) {
+            listener.onDone(0, 0);
+            return;
+        }
+
+        final AtomicInteger remaining = new AtomicInteger(paths.size());
+        final AtomicInteger decoded = new AtomicInteger();
+        for (int i = 0; i < paths.size(); i++) {
+            final int index = i;
+            final String path = paths.get(i);
+            ourExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Result[] results = null;
+                    Throwable error = null;
+                    try {
+                        results = decodeFile(path);
+                        if (results.length > 0) {
+                            decoded.incrementAndGet();
+                        }
+                    } catch (Throwable t) {
+                        Log.e(TAG, "Could not decode " + path, t);
+                        error = t;
+                    }
+                    try {
+                        listener.onFileDecoded(index, path, results, error);
+                    } finally {
+                        if (remaining.decrementAndGet() == 0) {
+                            listener.onDone(paths.size(), decoded.get());
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    private Result[] decodeFile(String path) throws IOException, InterruptedException {
+        if (path.startsWith("file://")) {
+            path = path.substring("file://".length());
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Not an image: " + path);
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = getSampleSize(options.outWidth, options.outHeight, _maxDimension);
+
+        // a file larger than the whole budget is decoded alone
+        long width = (options.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+        long height = (options.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+        int memory = (int) Math.max(1, Math.min(MEMORY_BUDGET, width * height * BYTES_PER_PIXEL / 1024));
+        ourMemory.acquire(memory);
+        try {
+            return decodeFile(path, options);
+        } finally {
+            ourMemory.release(memory);
+        }
+    }
+
+    private Result[] decodeFile(String path, BitmapFactory.Options options) throws IOException {
+        // half the memory of ARGB_8888, zxing only needs the luminance
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        Bitmap bitmap = BitmapFactory.decodeFile(path, options);
+        if (bitmap == null) {
+            throw new IOException("Could not read " + path);
+        }
+
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] pixels = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        bitmap.recycle();
+
+        Worker worker = _workers.get();
+        BinaryBitmap image = new BinaryBitmap(new HybridBinarizer(new RGBLuminanceSource(width, height, pixels)));
+        try {
+            if (_multiple) {
+                return worker.decodeMultiple(image);
+            }
+            return new Result[] { worker.decode(image) };
+        } catch (NotFoundException e) {
+            return new Result[0];
+        } finally {
+            worker.reader.reset();
+        }
+    }
+
+    /**
+     * The smallest power of 2 subsampling bringing the longer side down to `maxDimension`.
+     */
+    static int getSampleSize(int width, int height, int maxDimension) {
+        int sampleSize = 1;
+        while (maxDimension > 0 && Math.max(width, height) / sampleSize > maxDimension) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static class Worker {
+        final MultiFormatReader reader = new MultiFormatReader();
+        final GenericMultipleBarcodeReader multipleReader = new GenericMultipleBarcodeReader(reader);
+        final QRCodeMultiReader qrCodeReader = new QRCodeMultiReader();
+        private final EnumMap<DecodeHintType, Object> _hints;
+        // whether QR codes are looked for, no formats looks for every format
+        private final boolean _qrCode;
+        private final boolean _qrCodeOnly;
+
+        @SuppressWarnings("unchecked")
+        Worker(EnumMap<DecodeHintType, Object> hints) {
+            reader.setHints(hints);
+            _hints = hints;
+            EnumSet<BarcodeFormat> formats = (EnumSet<BarcodeFormat>) hints.get(DecodeHintType.POSSIBLE_FORMATS);
+            _qrCode = formats.isEmpty() || formats.contains(BarcodeFormat.QR_CODE);
+            _qrCodeOnly = formats.size() == 1 && formats.contains(BarcodeFormat.QR_CODE);
+        }
+
+        /**
+         * The first barcode of `image`. The QR code reader gives up on the finder patterns of
+         * several QR codes, so a miss is retried with the QR code reader of zxing.
+         */
+        Result decode(BinaryBitmap image) throws NotFoundException {
+            try {
+                return reader.decodeWithState(image);
+            } catch (NotFoundException e) {
+                if (!_qrCode) {
+                    throw e;
+                }
+                return qrCodeReader.decodeMultiple(image, _hints)[0];
+            }
+        }
+
+        /**
+         * Every barcode of `image`. The generic reader only looks further once a first barcode
+         * decodes, which the finder patterns of several QR codes side by side prevent, so QR codes
+         * are looked for with the QR code reader of zxing.
+         */
+        Result[] decodeMultiple(BinaryBitmap image) {
+            LinkedHashMap<String, Result> results = new LinkedHashMap<>();
+            if (_qrCode) {
+                try {
+                    for (Result result : qrCodeReader.decodeMultiple(image, _hints)) {
+                        results.put(result.getBarcodeFormat() + ":" + result.getText(), result);
+                    }
+                } catch (NotFoundException e) {
+                    // none
+                }
+            }
+            if (!_qrCodeOnly) {
+                try {
+                    for (Result result : multipleReader.decodeMultiple(image, _hints)) {
+                        String key = result.getBarcodeFormat() + ":" + result.getText();
+                        if (!results.containsKey(key)) {
+                            results.put(key, result);
+                        }
+                    }
+                } catch (NotFoundException e) {
+                    // none
+                }
+            }
+            return results.values().toArray(new Result[results.size()]);
+        }
+    }
+}
@@ -0,0 +1,768 @@
+package com.lwansbrough.RCTCamera;
+
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Binarizer;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Reader;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.multi.GenericMultipleBarcodeReader;
+import com.google.zxing.multi.qrcode.QRCodeMultiReader;
+
+/**
+ * Decodes barcodes in the preview frames when the barcode scanner is enabled.
+ *
+ * Up to `DECODE_CONCURRENCY` consecutive frames are decoded at once. Each of them takes a decoder
+ * (zxing reader and buffers) of its own from a pool, and results are emitted in frame order: a
+ * frame is registered when it is queued (see `onSubmit`), and its results wait for every earlier
+ * frame still queued or decoding.
+ *
+ * Only Java and zxing classes are used from the frame to the emitted event, so recordings can be
+ * replayed through the processor on the JVM, see `RCTFrameReplaySource`.
+ */
+class RCTBarcodeFrameProcessor implements RCTFrameProcessor.Sequenced {
+    public static final String NAME = "barcode";
+
+    // coarsest level of the decode pyramid, level n is downsampled by 2^n
+    private static final int MAX_LEVEL = 2;
+    // don't downsample the scanned region below this many pixels on its shorter side
+    private static final int MIN_LEVEL_SIZE = 240;
+    // consecutive decodes at the start level before trying to start one level coarser
+    private static final int PROMOTE_AFTER = 8;
+    // full resolution attempts of frames at least this sharp, as measured by the quality gate,
+    // are made with TRY_HARDER: about a mean difference of 6 between neighbouring pixels
+    private static final float TRY_HARDER_MIN_SHARPNESS = 250;
+    // rows and columns the histogram is sampled every
+    private static final int HISTOGRAM_STEP = 4;
+    // the global histogram binarizer is tried first when the darkest and brightest 5% of the
+    // region are this far apart, and the median is neither too dark nor too bright
+    private static final int GLOBAL_MIN_CONTRAST = 96;
+    private static final int GLOBAL_MIN_MEDIAN = 48;
+    private static final int GLOBAL_MAX_MEDIAN = 208;
+
+    // frames decoded at once, each on its own worker
+    public static final int DECODE_CONCURRENCY = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+    private final RCTFrameProcessorHost _host;
+    // formats the readers look for, narrowed to the recently decoded ones
+    private RCTBarcodeHintStrategy _hintStrategy;
+    // idle decoders, zxing readers are stateful so a decoder is only ever used by one worker
+    private final ArrayDeque<Decoder> _decoders = new ArrayDeque<>();
+    // sequences of the frames queued or being decoded, and the decoded frames waiting for earlier
+    // ones
+    private final TreeSet<Long> _decoding = new TreeSet<>();
+    private final TreeMap<Long, Decoded> _decoded = new TreeMap<>();
+    // find every barcode of a frame, see `setMultiple`
+    private volatile boolean _multiple = false;
+    private final RCTBarcodeDeduplicator _deduplicator = new RCTBarcodeDeduplicator();
+    // skips frames that can't decode
+    private final RCTFrameQualityGate _qualityGate = new RCTFrameQualityGate();
+    // the displayed preview in view coordinates, normalized to the view, to locate barcodes
+    private volatile Area _previewBounds = Area.FULL;
+    // region to scan, normalized to the displayed preview, null for the whole frame
+    private volatile Area _scanArea;
+    // pyramid level decoding starts at, adapted to the level barcodes were last found at
+    private int _startLevel = MAX_LEVEL;
+    private int _startLevelStreak = 0;
+
+    public RCTBarcodeFrameProcessor(RCTFrameProcessorHost host, List<String> barCodeTypes) {
+        _host = host;
+        this.initBarcodeReader(barCodeTypes);
+    }
+
+    /**
+     * Only binarize and decode the part of the frames displayed in `area`, a rectangle
+     * normalized to the displayed preview (0 to 1, upright and mirrored like the view finder).
+     */
+    public void setScanArea(Area area) {
+        _scanArea = area;
+    }
+
+    /**
+     * Where the preview is displayed, normalized to the camera view: the view finder is larger
+     * than the view with the fill aspect and smaller with fit.
+     */
+    public void setPreviewBounds(Area bounds) {
+        _previewBounds = bounds;
+    }
+
+    /**
+     * Find every barcode in a frame and emit them together in a single `CameraBarCodesReadAndroid`
+     * event, with their result points, rather than a `CameraBarCodeReadAndroid` event for the
+     * first barcode found.
+     */
+    public void setMultiple(boolean multiple) {
+        _multiple = multiple;
+    }
+
+    /**
+     * Don't emit a barcode again while it stays in view, unless it wasn't seen for `ttl`
+     * milliseconds. 0 emits every decode.
+     */
+    public void setDeduplicationInterval(long ttl) {
+        _deduplicator.setTimeToLive(ttl);
+    }
+
+    /**
+     * Skip frames darker, brighter or blurrier than `thresholds` without decoding them, null
+     * restores the defaults.
+     */
+    public void setQualityThresholds(RCTFrameQualityGate.Thresholds thresholds) {
+        _qualityGate.setThresholds(thresholds);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return RCTCamera.getInstance().isBarcodeScannerEnabled();
+    }
+
+    @Override
+    public void onSubmit(RCTFrameDescriptor descriptor) {
+        synchronized (_decoded) {
+            _decoding.add(descriptor.sequence);
+        }
+    }
+
+    @Override
+    public void onDrop(RCTFrameDescriptor descriptor) {
+        synchronized (_decoded) {
+            _decoding.remove(descriptor.sequence);
+            emitReady();
+        }
+    }
+
+    @Override
+    public void process(RCTPreviewFrame frame) {
+        byte[] data = frame.getData();
+        RCTFrameDescriptor descriptor = frame.getDescriptor();
+        Decoded decoded = new Decoded(descriptor, _multiple);
+
+        Decoder decoder = acquireDecoder();
+        try {
+            int dataWidth = descriptor.width;
+            int dataHeight = descriptor.height;
+            Crop crop = getCrop(descriptor);
+            decoded.sensorCrop = new Crop(crop.left, crop.top, crop.width, crop.height);
+
+            String rejection = _qualityGate.check(data, dataWidth, crop.left, crop.top, crop.width, crop.height, decoder.quality);
+            if (rejection != null) {
+                _host.getFrameStats().getProcessorStats(NAME).increment(rejection);
+                decoded.rejected = true;
+                return;
+            }
+
+            // rotate for zxing if orientation is portrait, zxing only reads the luma plane
+            if (decoded.rotated) {
+                int size = crop.width * crop.height;
+                if (decoder.rotatedLuma == null || decoder.rotatedLuma.length < size) {
+                    decoder.rotatedLuma = new byte[size];
+                }
+                RCTLumaUtils.rotateClockwise(data, dataWidth, crop.left, crop.top, crop.width, crop.height, decoder.rotatedLuma);
+                dataWidth = crop.height;
+                dataHeight = crop.width;
+                crop = new Crop(0, 0, dataWidth, dataHeight);
+                data = decoder.rotatedLuma;
+                // the rotated copy is all zxing needs from here on
+                frame.release();
+            }
+
+            decoded.results = decode(decoder, data, dataWidth, dataHeight, crop, decoded.multiple);
+            decoded.level = decoder.level;
+            if (decoded.results != null) {
+                _hintStrategy.onDecoded(decoded.results);
+            } else {
+                _hintStrategy.onMissed();
+            }
+        } finally {
+            releaseDecoder(decoder);
+            complete(decoded);
+        }
+    }
+
+    private Decoder acquireDecoder() {
+        synchronized (_decoders) {
+            Decoder decoder = _decoders.poll();
+            if (decoder != null) {
+                return decoder;
+            }
+        }
+        return new Decoder();
+    }
+
+    private void releaseDecoder(Decoder decoder) {
+        synchronized (_decoders) {
+            _decoders.push(decoder);
+        }
+    }
+
+    /**
+     * Emit the results of `decoded` and of the frames decoded after it, once every earlier frame
+     * is done too.
+     */
+    private void complete(Decoded decoded) {
+        synchronized (_decoded) {
+            _decoding.remove(decoded.descriptor.sequence);
+            _decoded.put(decoded.descriptor.sequence, decoded);
+            emitReady();
+        }
+    }
+
+    /**
+     * Emit the decoded frames no queued or decoding frame precedes. Called with `_decoded` held.
+     */
+    private void emitReady() {
+        while (!_decoded.isEmpty() && (_decoding.isEmpty() || _decoding.first() > _decoded.firstKey())) {
+            emit(_decoded.pollFirstEntry().getValue());
+        }
+    }
+
+    private void emit(Decoded decoded) {
+        if (decoded.rejected) {
+            // says nothing about the barcodes in view
+            return;
+        }
+        _deduplicator.onFrame();
+        if (decoded.results == null) {
+            return;
+        }
+        Result[] results = deduplicate(decoded.results, decoded.descriptor.timestamp);
+        if (results.length == 0) {
+            return;
+        }
+
+        try {
+            if (!decoded.multiple) {
+                WritableMap event = _host.createMap();
+                event.putString("data", results[0].getText());
+                event.putString("type", results[0].getBarcodeFormat().toString());
+                _host.emit("CameraBarCodeReadAndroid", event);
+                return;
+            }
+
+            WritableArray barcodes = _host.createArray();
+            for (Result result : results) {
+                WritableMap barcode = _host.createMap();
+                barcode.putString("data", result.getText());
+                barcode.putString("type", result.getBarcodeFormat().toString());
+                WritableArray points = _host.createArray();
+                if (result.getResultPoints() != null) {
+                    for (ResultPoint point : result.getResultPoints()) {
+                        if (point != null) {
+                            points.pushMap(toViewPoint(point, decoded));
+                        }
+                    }
+                }
+                barcode.putArray("points", points);
+                barcodes.pushMap(barcode);
+            }
+            WritableMap event = _host.createMap();
+            event.putArray("barcodes", barcodes);
+            _host.emit("CameraBarCodesReadAndroid", event);
+        } catch (Throwable t) {
+            // meh
+        }
+    }
+
+    private Result[] deduplicate(Result[] results, long now) {
+        List<Result> accepted = new ArrayList<>(results.length);
+        for (Result result : results) {
+            if (_deduplicator.accept(result.getBarcodeFormat().toString(), result.getText(), now)) {
+                accepted.add(result);
+            } else {
+                _host.getFrameStats().getProcessorStats(NAME).increment("suppressed");
+            }
+        }
+        return accepted.size() == results.length ? results : accepted.toArray(new Result[accepted.size()]);
+    }
+
+    /**
+     * Map a result point found at a level of the pyramid of the scanned crop back to the camera
+     * view, normalized to its size like `barCodeScanArea`.
+     */
+    private WritableMap toViewPoint(ResultPoint point, Decoded decoded) {
+        RCTFrameDescriptor descriptor = decoded.descriptor;
+        Crop sensorCrop = decoded.sensorCrop;
+        float x = point.getX() * (1 << decoded.level);
+        float y = point.getY() * (1 << decoded.level);
+        if (decoded.rotated) {
+            // undo `RCTLumaUtils.rotateClockwise`
+            float cropX = y;
+            y = sensorCrop.height - 1 - x;
+            x = cropX;
+        }
+
+        float s = (sensorCrop.left + x) / descriptor.width;
+        float t = (sensorCrop.top + y) / descriptor.height;
+        float u;
+        float v;
+        switch (descriptor.rotation) {
+            case 90:
+                u = 1 - t;
+                v = s;
+                break;
+            case 180:
+                u = 1 - s;
+                v = 1 - t;
+                break;
+            case 270:
+                u = t;
+                v = 1 - s;
+                break;
+            default:
+                u = s;
+                v = t;
+        }
+        if (descriptor.mirrored) {
+            u = 1 - u;
+        }
+
+        Area bounds = _previewBounds;
+        WritableMap viewPoint = _host.createMap();
+        viewPoint.putDouble("x", bounds.left + u * (bounds.right - bounds.left));
+        viewPoint.putDouble("y", bounds.top + v * (bounds.bottom - bounds.top));
+        return viewPoint;
+    }
+
+    /**
+     * Decode the `crop` of the luma plane, coarse to fine: start on a downsampled copy, which
+     * often decodes large barcodes for a fraction of the binarizer cost, and only go up to full
+     * resolution after a miss.
+     *
+     * The start level follows the level barcodes are found at: finer as soon as a barcode needed
+     * more resolution, coarser again after a streak of decodes at the start level.
+     *
+     * With `multiple`, the frame is only decoded at full resolution: a coarse level finding the
+     * large barcodes of a frame says nothing about the small ones it would miss.
+     *
+     * Every level looks for the formats of `_hintStrategy`, and the full resolution attempt tries
+     * harder if the frame is sharp enough to be worth it, and falls back to the QR code multi
+     * reader for frames holding several QR codes.
+     *
+     * Evenly lit, high contrast frames binarize fine with a single global threshold, so they are
+     * first tried with the cheap `GlobalHistogramBinarizer` and only then with `HybridBinarizer`.
+     */
+    private Result[] decode(Decoder decoder, byte[] data, int dataWidth, int dataHeight, Crop crop, boolean multiple) {
+        int levels = 0;
+        while (levels < MAX_LEVEL && Math.min(crop.width, crop.height) >> (levels + 1) >= MIN_LEVEL_SIZE) {
+            levels++;
+        }
+        int startLevel = multiple ? 0 : Math.min(getStartLevel(), levels);
+        byte[][] pyramid = decoder.pyramid;
+
+        // each level is downsampled from the next finer one
+        for (int level = 1; level <= startLevel; level++) {
+            int width = crop.width >> level;
+            int height = crop.height >> level;
+            if (pyramid[level] == null || pyramid[level].length < width * height) {
+                pyramid[level] = new byte[width * height];
+            }
+            if (level == 1) {
+                RCTLumaUtils.halve(data, dataWidth, crop.left, crop.top, crop.width, crop.height, pyramid[1]);
+            } else {
+                RCTLumaUtils.halve(pyramid[level - 1], crop.width >> (level - 1), 0, 0, crop.width >> (level - 1), crop.height >> (level - 1), pyramid[level]);
+            }
+        }
+
+        RCTFrameStats.ProcessorStats stats = _host.getFrameStats().getProcessorStats(NAME);
+        boolean global = isEvenlyLit(decoder, data, dataWidth, crop);
+        EnumSet<BarcodeFormat> formats = _hintStrategy.getFormats(multiple);
+        if (_hintStrategy.isNarrowed(formats)) {
+            stats.increment("narrowed");
+        }
+        for (int level = startLevel; level >= 0; level--) {
+            boolean tryHarder = level == 0 && decoder.quality.sharpness >= TRY_HARDER_MIN_SHARPNESS;
+            if (tryHarder) {
+                stats.increment("triedHarder");
+            }
+            decoder.setHints(formats, tryHarder);
+
+            LuminanceSource source;
+            if (level == 0) {
+                source = new PlanarYUVLuminanceSource(data, dataWidth, dataHeight, crop.left, crop.top, crop.width, crop.height, false);
+            } else {
+                int width = crop.width >> level;
+                int height = crop.height >> level;
+                source = new PlanarYUVLuminanceSource(pyramid[level], width, height, 0, 0, width, height, false);
+            }
+
+            Result[] results = null;
+            if (global) {
+                results = decode(decoder, new GlobalHistogramBinarizer(source), multiple, level == 0);
+                stats.recordAttempt("globalBinarizer", results != null);
+            }
+            if (results == null) {
+                results = decode(decoder, new HybridBinarizer(source), multiple, level == 0);
+                stats.recordAttempt("hybridBinarizer", results != null);
+            }
+            if (results != null) {
+                stats.increment("decodedAtLevel" + level);
+                if (!multiple) {
+                    adaptStartLevel(level, levels);
+                }
+                decoder.level = level;
+                return results;
+            }
+        }
+        return null;
+    }
+
+    private Result[] decode(Decoder decoder, Binarizer binarizer, boolean multiple, boolean fullResolution) {
+        try {
+            BinaryBitmap bitmap = new BinaryBitmap(binarizer);
+            if (multiple) {
+                return decoder.decodeMultiple(bitmap);
+            }
+            return new Result[] { decoder.decode(bitmap, fullResolution) };
+        } catch (Throwable t) {
+            // not found
+            return null;
+        } finally {
+            decoder.reader.reset();
+        }
+    }
+
+    /**
+     * Whether the luma histogram of the `crop` says a global threshold is likely to binarize it.
+     */
+    private boolean isEvenlyLit(Decoder decoder, byte[] data, int dataWidth, Crop crop) {
+        int count = RCTLumaUtils.histogram(data, dataWidth, crop.left, crop.top, crop.width, crop.height, HISTOGRAM_STEP, decoder.histogram);
+        if (count == 0) {
+            return false;
+        }
+        int median = RCTLumaUtils.percentile(decoder.histogram, count, 0.5f);
+        int contrast = RCTLumaUtils.percentile(decoder.histogram, count, 0.95f) - RCTLumaUtils.percentile(decoder.histogram, count, 0.05f);
+        return contrast >= GLOBAL_MIN_CONTRAST && median >= GLOBAL_MIN_MEDIAN && median <= GLOBAL_MAX_MEDIAN;
+    }
+
+    private synchronized int getStartLevel() {
+        return _startLevel;
+    }
+
+    private synchronized void adaptStartLevel(int level, int levels) {
+        if (level < _startLevel) {
+            _startLevel = level;
+            _startLevelStreak = 0;
+        } else if (++_startLevelStreak >= PROMOTE_AFTER && _startLevel < levels) {
+            _startLevel++;
+            _startLevelStreak = 0;
+        }
+    }
+
+    /**
+     * The scan area in frame (sensor) coordinates: undo the mirroring and the rotation the
+     * preview is displayed with.
+     */
+    private Crop getCrop(RCTFrameDescriptor descriptor) {
+        Area area = _scanArea;
+        if (area == null) {
+            return new Crop(0, 0, descriptor.width, descriptor.height);
+        }
+
+        float left = area.left;
+        float right = area.right;
+        if (descriptor.mirrored) {
+            left = 1 - area.right;
+            right = 1 - area.left;
+        }
+
+        Area sensor;
+        switch (descriptor.rotation) {
+            case 90:
+                sensor = new Area(area.top, 1 - right, area.bottom, 1 - left);
+                break;
+            case 180:
+                sensor = new Area(1 - right, 1 - area.bottom, 1 - left, 1 - area.top);
+                break;
+            case 270:
+                sensor = new Area(1 - area.bottom, left, 1 - area.top, right);
+                break;
+            default:
+                sensor = new Area(left, area.top, right, area.bottom);
+        }
+
+        // clipped to the frame
+        int cropLeft = Math.max(0, Math.round(sensor.left * descriptor.width));
+        int cropTop = Math.max(0, Math.round(sensor.top * descriptor.height));
+        int cropRight = Math.min(descriptor.width, Math.round(sensor.right * descriptor.width));
+        int cropBottom = Math.min(descriptor.height, Math.round(sensor.bottom * descriptor.height));
+        if (cropRight <= cropLeft || cropBottom <= cropTop) {
+            return new Crop(0, 0, descriptor.width, descriptor.height);
+        }
+        return new Crop(cropLeft, cropTop, cropRight - cropLeft, cropBottom - cropTop);
+    }
+
+    /**
+     * A rectangle normalized to the displayed preview or to the camera view, 0 to 1.
+     */
+    static class Area {
+        static final Area FULL = new Area(0, 0, 1, 1);
+
+        final float left;
+        final float top;
+        final float right;
+        final float bottom;
+
+        Area(float left, float top, float right, float bottom) {
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+        }
+    }
+
+    /**
+     * A region of a frame in pixels.
+     */
+    private static class Crop {
+        final int left;
+        final int top;
+        final int width;
+        final int height;
+
+        Crop(int left, int top, int width, int height) {
+            this.left = left;
+            this.top = top;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /**
+     * Reader and buffers used to decode a single frame at a time.
+     */
+    private static class Decoder {
+        final MultiFormatReader reader = new MultiFormatReader();
+        // find every barcode of a frame, see `decodeMultiple`
+        final GenericMultipleBarcodeReader multipleReader = new GenericMultipleBarcodeReader(new StatefulReader(reader));
+        final QRCodeMultiReader qrCodeReader = new QRCodeMultiReader();
+        // luma plane of portrait frames rotated for zxing, reused from frame to frame
+        byte[] rotatedLuma;
+        // downsampled luma planes, reused from frame to frame, see `decode`
+        final byte[][] pyramid = new byte[MAX_LEVEL + 1][];
+        // level the results of the last `decode` were found at
+        int level;
+        // luma histogram of the scanned region, see `isEvenlyLit`
+        final int[] histogram = new int[256];
+        // brightness and sharpness of the frame being decoded, see `RCTFrameQualityGate`
+        final RCTFrameQualityGate.Measurement quality = new RCTFrameQualityGate.Measurement();
+        // hints the reader is set up with
+        private EnumSet<BarcodeFormat> _formats;
+        private boolean _tryHarder;
+        private EnumMap<DecodeHintType, Object> _hints;
+
+        /**
+         * Set the reader up for `formats`, unless it already is: this instantiates the readers of
+         * the formats.
+         */
+        void setHints(EnumSet<BarcodeFormat> formats, boolean tryHarder) {
+            if (formats.equals(_formats) && tryHarder == _tryHarder) {
+                return;
+            }
+            EnumMap<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+            hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+            if (tryHarder) {
+                hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+            }
+            reader.setHints(hints);
+            _formats = formats;
+            _tryHarder = tryHarder;
+            _hints = hints;
+        }
+
+        /**
+         * The first barcode of `bitmap`. The QR code reader gives up on the finder patterns of
+         * several QR codes, so with `fallback` a miss is retried with the QR code reader of zxing,
+         * which reuses the binarized bitmap.
+         */
+        Result decode(BinaryBitmap bitmap, boolean fallback) throws NotFoundException {
+            try {
+                return reader.decodeWithState(bitmap);
+            } catch (NotFoundException e) {
+                // no formats looks for every format
+                if (!fallback || !(_formats.isEmpty() || _formats.contains(BarcodeFormat.QR_CODE))) {
+                    throw e;
+                }
+                return qrCodeReader.decodeMultiple(bitmap, _hints)[0];
+            }
+        }
+
+        /**
+         * Every barcode of `bitmap`, null if none. The generic reader only looks further once a
+         * first barcode decodes, which the finder patterns of several QR codes side by side
+         * prevent, so QR codes are looked for with the QR code reader of zxing.
+         */
+        Result[] decodeMultiple(BinaryBitmap bitmap) {
+            LinkedHashMap<String, Result> results = new LinkedHashMap<>();
+            // no formats looks for every format
+            boolean qrCode = _formats.isEmpty() || _formats.contains(BarcodeFormat.QR_CODE);
+            if (qrCode) {
+                try {
+                    for (Result result : qrCodeReader.decodeMultiple(bitmap, _hints)) {
+                        results.put(result.getBarcodeFormat() + ":" + result.getText(), result);
+                    }
+                } catch (NotFoundException e) {
+                    // none
+                }
+            }
+            if (!qrCode || _formats.size() != 1) {
+                try {
+                    for (Result result : multipleReader.decodeMultiple(bitmap)) {
+                        String key = result.getBarcodeFormat() + ":" + result.getText();
+                        if (!results.containsKey(key)) {
+                            results.put(key, result);
+                        }
+                    }
+                } catch (NotFoundException e) {
+                    // none
+                }
+            }
+            return results.isEmpty() ? null : results.values().toArray(new Result[results.size()]);
+        }
+    }
+
+    /**
+     * Outcome of the decoding of a frame, see `complete`.
+     */
+    private static class Decoded {
+        final RCTFrameDescriptor descriptor;
+        final boolean multiple;
+        final boolean rotated;
+        Crop sensorCrop;
+        // skipped by the quality gate
+        boolean rejected;
+        // null if nothing was found
+        Result[] results;
+        int level;
+
+        Decoded(RCTFrameDescriptor descriptor, boolean multiple) {
+            this.descriptor = descriptor;
+            this.multiple = multiple;
+            this.rotated = descriptor.rotation % 180 != 0;
+        }
+    }
+
+    /**
+     * Lets the multiple barcode reader run its sub-image decodes with the hints the reader was set
+     * up with, rather than having it set them up again for every attempt.
+     */
+    private static class StatefulReader implements Reader {
+        private final MultiFormatReader _reader;
+
+        StatefulReader(MultiFormatReader reader) {
+            _reader = reader;
+        }
+
+        @Override
+        public Result decode(BinaryBitmap image) throws NotFoundException {
+            return _reader.decodeWithState(image);
+        }
+
+        @Override
+        public Result decode(BinaryBitmap image, Map<DecodeHintType, ?> hints) throws NotFoundException {
+            return _reader.decodeWithState(image);
+        }
+
+        @Override
+        public void reset() {
+            _reader.reset();
+        }
+    }
+
+    /**
+     * Parse barcodes as BarcodeFormat constants.
+     *
+     * Supports all iOS codes except [code138, code39mod43, itf14]
+     *
+     * Additionally supports [codabar, code128, maxicode, rss14, rssexpanded, upca, upceanextension]
+     */
+    static BarcodeFormat parseBarCodeString(String c) {
+        if ("aztec".equals(c)) {
+            return BarcodeFormat.AZTEC;
+        } else if ("ean13".equals(c)) {
+            return BarcodeFormat.EAN_13;
+        } else if ("ean8".equals(c)) {
+            return BarcodeFormat.EAN_8;
+        } else if ("qr".equals(c)) {
+            return BarcodeFormat.QR_CODE;
+        } else if ("pdf417".equals(c)) {
+            return BarcodeFormat.PDF_417;
+        } else if ("upce".equals(c)) {
+            return BarcodeFormat.UPC_E;
+        } else if ("datamatrix".equals(c)) {
+            return BarcodeFormat.DATA_MATRIX;
+        } else if ("code39".equals(c)) {
+            return BarcodeFormat.CODE_39;
+        } else if ("code93".equals(c)) {
+            return BarcodeFormat.CODE_93;
+        } else if ("interleaved2of5".equals(c)) {
+            return BarcodeFormat.ITF;
+        } else if ("codabar".equals(c)) {
+            return BarcodeFormat.CODABAR;
+        } else if ("code128".equals(c)) {
+            return BarcodeFormat.CODE_128;
+        } else if ("maxicode".equals(c)) {
+            return BarcodeFormat.MAXICODE;
+        } else if ("rss14".equals(c)) {
+            return BarcodeFormat.RSS_14;
+        } else if ("rssexpanded".equals(c)) {
+            return BarcodeFormat.RSS_EXPANDED;
+        } else if ("upca".equals(c)) {
+            return BarcodeFormat.UPC_A;
+        } else if ("upceanextension".equals(c)) {
+            return BarcodeFormat.UPC_EAN_EXTENSION;
+        } else {
+            android.util.Log.v("RCTCamera", "Unsupported code.. [" + c + "]");
+            return null;
+        }
+    }
+
+    /**
+     * Parse the supported barcode types of `barCodeTypes`.
+     */
+    static EnumSet<BarcodeFormat> parseBarCodeTypes(List<String> barCodeTypes) {
+        EnumSet<BarcodeFormat> decodeFormats = EnumSet.noneOf(BarcodeFormat.class);
+
+        if (barCodeTypes != null) {
+            for (String code : barCodeTypes) {
+                BarcodeFormat format = parseBarCodeString(code);
+                if (format != null) {
+                    decodeFormats.add(format);
+                }
+            }
+        }
+
+        return decodeFormats;
+    }
+
+    /**
+     * Initialize the barcode decoder.
+     */
+    private void initBarcodeReader(List<String> barCodeTypes) {
+        _hintStrategy = new RCTBarcodeHintStrategy(parseBarCodeTypes(barCodeTypes));
+    }
+}
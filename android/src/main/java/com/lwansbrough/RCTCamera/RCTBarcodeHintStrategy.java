@@ -0,0 +1,69 @@
+package com.lwansbrough.RCTCamera;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+
+import java.util.ArrayDeque;
+import java.util.EnumSet;
+
+/**
+ * Picks the formats the barcode readers look for, from the formats of the recent decodes.
+ *
+ * Most scans of a session are of the same symbology, so frames are only decoded for the formats
+ * found recently, which skips the other readers of `MultiFormatReader`. Every configured format
+ * is still tried on one frame out of `WIDEN_EVERY`, so a barcode of another symbology showing up
+ * is found even while a known one stays in view, and after `WIDEN_AFTER_MISSES` consecutive
+ * frames without a barcode, until the next decode.
+ *
+ * Frames decoded for every barcode they contain are never narrowed.
+ */
+class RCTBarcodeHintStrategy {
+    // decodes the recent formats are taken from
+    private static final int RECENT_DECODES = 16;
+    // consecutive frames without a barcode before trying every configured format again
+    private static final int WIDEN_AFTER_MISSES = 3;
+    // one frame out of this many is decoded for every configured format
+    private static final int WIDEN_EVERY = 4;
+
+    private final EnumSet<BarcodeFormat> _formats;
+    private final ArrayDeque<BarcodeFormat> _recent = new ArrayDeque<>();
+    private int _missStreak = 0;
+    private int _frames = 0;
+
+    public RCTBarcodeHintStrategy(EnumSet<BarcodeFormat> formats) {
+        _formats = EnumSet.copyOf(formats);
+    }
+
+    /**
+     * The formats to decode the next frame for, `multiple` if it is decoded for every barcode it
+     * contains.
+     */
+    public synchronized EnumSet<BarcodeFormat> getFormats(boolean multiple) {
+        _frames++;
+        if (multiple || _recent.isEmpty() || _missStreak >= WIDEN_AFTER_MISSES || _frames % WIDEN_EVERY == 0) {
+            return EnumSet.copyOf(_formats);
+        }
+        return EnumSet.copyOf(_recent);
+    }
+
+    /**
+     * Whether `formats` is narrower than the configured formats.
+     */
+    public boolean isNarrowed(EnumSet<BarcodeFormat> formats) {
+        return !formats.equals(_formats);
+    }
+
+    public synchronized void onDecoded(Result[] results) {
+        _missStreak = 0;
+        for (Result result : results) {
+            _recent.addLast(result.getBarcodeFormat());
+            if (_recent.size() > RECENT_DECODES) {
+                _recent.removeFirst();
+            }
+        }
+    }
+
+    public synchronized void onMissed() {
+        _missStreak++;
+    }
+}
@@ -4,36 +4,60 @@
 
 package com.lwansbrough.RCTCamera;
 
+import android.content.Context;
 import android.hardware.Camera;
 import android.media.CamcorderProfile;
 import android.util.Log;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.lang.Math;
 
 public class RCTCamera {
-    private static RCTCamera ourInstance;
+    private static volatile RCTCamera ourInstance;
+    private static RCTCameraCapabilityCache ourCapabilityCache;
     private final HashMap<Integer, CameraInfoWrapper> _cameraInfos;
     private final HashMap<Integer, Integer> _cameraTypeToIndex;
     private final Map<Number, Camera> _cameras;
+    // write-through cache of the parameters of each open camera, see `beginParametersTransaction`
+    private final Map<Integer, Camera.Parameters> _parameters;
+    private final Map<Integer, ParametersTransaction> _transactions;
+    // flattened parameters last handed to each open camera, to skip redundant `setParameters`
+    private final Map<Integer, String> _appliedParameters;
+    // flattened parameters each camera had when it was last released, restored when it is opened
+    // again so switching back and forth between cameras doesn't recompute them
+    private final Map<Integer, String> _preparedParameters;
     private static final Resolution RESOLUTION_480P = new Resolution(853, 480); // 480p shoots for a 16:9 HD aspect ratio, but can otherwise fall back/down to any other supported camera sizes, such as 800x480 or 720x480, if (any) present. See getSupportedPictureSizes/getSupportedVideoSizes below.
     private static final Resolution RESOLUTION_720P = new Resolution(1280, 720);
     private static final Resolution RESOLUTION_1080P = new Resolution(1920, 1080);
     private boolean _barcodeScannerEnabled = false;
     private boolean _previewModeEnabled = false;
+    private volatile RCTPreviewFrameOptions _previewFrameOptions = RCTPreviewFrameOptions.DEFAULT;
     private boolean _heartRateModeEnabled = false;
     private List<String> _barCodeTypes = null;
     private int _orientation = -1;
     private int _actualDeviceOrientation = 0;
     private int _adjustedDeviceOrientation = 0;
+    private final RCTFrameStats _frameStats = new RCTFrameStats();
 
     public static RCTCamera getInstance() {
         return ourInstance;
     }
-    public static void createInstance(int deviceOrientation) {
-        ourInstance = new RCTCamera(deviceOrientation);
+    /**
+     * Create the instance shared by every view, or keep the existing one along with its prepared
+     * parameters and frame stats.
+     */
+    public static synchronized void createInstance(Context context, int deviceOrientation) {
+        if (ourCapabilityCache == null) {
+            ourCapabilityCache = new RCTCameraCapabilityCache(new File(context.getCacheDir(), "RCTCameraCapabilities.json"));
+        }
+        if (ourInstance == null) {
+            ourInstance = new RCTCamera(deviceOrientation);
+        } else {
+            ourInstance.setActualDeviceOrientation(deviceOrientation);
+        }
     }
 
 
@@ -42,6 +66,10 @@ public class RCTCamera {
             try {
                 Camera camera = Camera.open(_cameraTypeToIndex.get(type));
                 _cameras.put(type, camera);
+                restorePreparedParameters(type, camera);
+                if (ourCapabilityCache.get(_cameraTypeToIndex.get(type)) == null) {
+                    ourCapabilityCache.put(_cameraTypeToIndex.get(type), RCTCameraCapabilities.fromParameters(getParameters(type)));
+                }
                 adjustPreviewLayout(type);
             } catch (Exception e) {
                 Log.e("RCTCamera", "acquireCameraInstance failed", e);
@@ -51,12 +79,196 @@ public class RCTCamera {
     }
 
     public void releaseCameraInstance(int type) {
+        Camera releasingCamera = detachCameraInstance(type);
+        if (null != releasingCamera) {
+            releasingCamera.release();
+        }
+    }
+
+    /**
+     * Forget the camera of the given type, as if it was released, and return it for the caller to
+     * release, e.g. on another thread while the next camera opens. Null if it isn't open.
+     */
+    public synchronized Camera detachCameraInstance(int type) {
         // Release seems async and creates race conditions. Remove from map first before releasing.
         Camera releasingCamera = _cameras.get(type);
         if (null != releasingCamera) {
+            // the parameters are only consistent between transactions
+            awaitTransaction(type);
+            Camera.Parameters parameters = _parameters.get(type);
+            if (null != parameters) {
+                _preparedParameters.put(type, parameters.flatten());
+            }
             _cameras.remove(type);
-            releasingCamera.release();
+            _parameters.remove(type);
+            _appliedParameters.remove(type);
+            _transactions.remove(type);
+            // wake the threads waiting for that transaction, they find the camera closed
+            notifyAll();
+        }
+        return releasingCamera;
+    }
+
+    /**
+     * Parameters of the camera of the given type, read from the camera only once while it is open.
+     *
+     * The returned instance is the cached one: use a {ParametersTransaction} to change it, and to
+     * read it while another thread may be changing it.
+     */
+    public synchronized Camera.Parameters getParameters(int type) {
+        Camera.Parameters parameters = _parameters.get(type);
+        if (null == parameters) {
+            Camera camera = _cameras.get(type);
+            if (null == camera) {
+                return null;
+            }
+            parameters = camera.getParameters();
+            _parameters.put(type, parameters);
         }
+        return parameters;
+    }
+
+    /**
+     * Forget the cached parameters of the given camera type, for when something other than a
+     * transaction changed them (e.g. MediaRecorder).
+     */
+    public synchronized void invalidateParameters(int type) {
+        _parameters.remove(type);
+        _appliedParameters.remove(type);
+    }
+
+    /**
+     * Hand the parameters the camera had when it was last released back to it in one go, so the
+     * layout and configuration that follow opening it are no-ops.
+     */
+    private void restorePreparedParameters(int type, Camera camera) {
+        String prepared = _preparedParameters.get(type);
+        if (null == prepared) {
+            return;
+        }
+        try {
+            Camera.Parameters parameters = camera.getParameters();
+            parameters.unflatten(prepared);
+            camera.setParameters(parameters);
+            _parameters.put(type, parameters);
+            _appliedParameters.put(type, prepared);
+        } catch (Exception e) {
+            Log.e("RCTCamera", "restoring the parameters failed", e);
+            _preparedParameters.remove(type);
+            _parameters.remove(type);
+        }
+    }
+
+    /**
+     * Start collecting parameter changes for the camera of the given type. Transactions nest:
+     * beginning a transaction while the same thread has one open for the same camera joins it,
+     * and only the outermost `commit` hands the parameters to the camera, in a single
+     * `setParameters` call.
+     *
+     * A transaction belongs to the thread that began it, the only one changing the parameters
+     * until it commits: other threads beginning a transaction for the same camera wait for that.
+     *
+     * Returns null if the camera isn't open.
+     */
+    public synchronized ParametersTransaction beginParametersTransaction(int type) {
+        awaitTransaction(type);
+        ParametersTransaction transaction = _transactions.get(type);
+        if (null == transaction) {
+            Camera camera = _cameras.get(type);
+            Camera.Parameters parameters = getParameters(type);
+            if (null == camera || null == parameters) {
+                return null;
+            }
+            transaction = new ParametersTransaction(type, camera, parameters);
+            _transactions.put(type, transaction);
+        }
+        transaction._depth++;
+        return transaction;
+    }
+
+    private synchronized void commitParametersTransaction(ParametersTransaction transaction) {
+        if (--transaction._depth > 0) {
+            return;
+        }
+        if (_transactions.get(transaction._type) == transaction) {
+            _transactions.remove(transaction._type);
+            notifyAll();
+        }
+        applyParameters(transaction);
+    }
+
+    /**
+     * Wait until no other thread has a transaction open for the camera of the given type.
+     */
+    private void awaitTransaction(int type) {
+        ParametersTransaction transaction = _transactions.get(type);
+        while (null != transaction && transaction._owner != Thread.currentThread()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            transaction = _transactions.get(type);
+        }
+    }
+
+    /**
+     * Hand the pending changes of the calling thread's open transaction, if any, to the camera
+     * right away. For code that needs the parameters applied (starting the preview, taking a
+     * picture) while an outer transaction may still be collecting changes. The transaction of
+     * another thread is waited for instead, it is applied once committed.
+     */
+    public synchronized void flushParameters(int type) {
+        awaitTransaction(type);
+        ParametersTransaction transaction = _transactions.get(type);
+        if (null != transaction) {
+            applyParameters(transaction);
+        }
+    }
+
+    private void applyParameters(ParametersTransaction transaction) {
+        // the camera may have been released while the transaction was open
+        if (!transaction._dirty || _cameras.get(transaction._type) != transaction._camera) {
+            return;
+        }
+        transaction._dirty = false;
+        String flattened = transaction._parameters.flatten();
+        if (flattened.equals(_appliedParameters.get(transaction._type))) {
+            return;
+        }
+        try {
+            transaction._camera.setParameters(transaction._parameters);
+            _appliedParameters.put(transaction._type, flattened);
+        } catch (Exception e) {
+            Log.e("RCTCamera", "setParameters failed", e);
+            // the camera kept its previous parameters, read them again next time
+            _parameters.remove(transaction._type);
+            _appliedParameters.remove(transaction._type);
+        }
+    }
+
+    /**
+     * What the camera of the given type supports, without opening it when it was opened before on
+     * this build of the system. Null if there is no such camera.
+     */
+    public synchronized RCTCameraCapabilities getCapabilities(int type) {
+        Integer index = _cameraTypeToIndex.get(type);
+        if (null == index) {
+            return null;
+        }
+        RCTCameraCapabilities capabilities = ourCapabilityCache.get(index);
+        if (null == capabilities) {
+            boolean wasOpen = null != _cameras.get(type);
+            if (null == acquireCameraInstance(type)) {
+                return null;
+            }
+            capabilities = ourCapabilityCache.get(index);
+            if (!wasOpen) {
+                releaseCameraInstance(type);
+            }
+        }
+        return capabilities;
     }
 
     public int getPreviewWidth(int type) {
@@ -75,6 +287,25 @@ public class RCTCamera {
         return cameraInfo.previewHeight;
     }
 
+    /**
+     * Clockwise rotation in degrees of the preview frames relative to the device orientation.
+     */
+    public int getPreviewRotation(int type) {
+        CameraInfoWrapper cameraInfo = _cameraInfos.get(type);
+        if (null == cameraInfo) {
+            return 0;
+        }
+        return cameraInfo.rotation;
+    }
+
+    /**
+     * Whether the preview of the camera is displayed mirrored, see `adjustPreviewLayout`.
+     */
+    public boolean isPreviewMirrored(int type) {
+        CameraInfoWrapper cameraInfo = _cameraInfos.get(type);
+        return null != cameraInfo && cameraInfo.info.facing == Camera.CameraInfo.CAMERA_FACING_FRONT;
+    }
+
     public Camera.Size getBestSize(List<Camera.Size> supportedSizes, int maxWidth, int maxHeight) {
         Camera.Size bestSize = null;
         for (Camera.Size size : supportedSizes) {
@@ -135,8 +366,8 @@ public class RCTCamera {
       return closestSize;
     }
 
-    protected List<Camera.Size> getSupportedVideoSizes(Camera camera) {
-        Camera.Parameters params = camera.getParameters();
+    protected List<Camera.Size> getSupportedVideoSizes(int type) {
+        Camera.Parameters params = getParameters(type);
         // defer to preview instead of params.getSupportedVideoSizes() http://bit.ly/1rxOsq0
         // but prefer SupportedVideoSizes!
         List<Camera.Size> sizes = params.getSupportedVideoSizes();
@@ -182,6 +413,14 @@ public class RCTCamera {
         _previewModeEnabled = previewModeEnabled;
     }
 
+    public RCTPreviewFrameOptions getPreviewFrameOptions() {
+        return _previewFrameOptions;
+    }
+
+    public void setPreviewFrameOptions(RCTPreviewFrameOptions previewFrameOptions) {
+        _previewFrameOptions = previewFrameOptions == null ? RCTPreviewFrameOptions.DEFAULT : previewFrameOptions;
+    }
+
     public void setHeartRateModeEnabled(boolean heartRateModeEnabled) {
         _heartRateModeEnabled = heartRateModeEnabled;
     }
@@ -193,6 +432,10 @@ public class RCTCamera {
         _barCodeTypes = barCodeTypes;
     }
 
+    public RCTFrameStats getFrameStats() {
+        return _frameStats;
+    }
+
     public int getActualDeviceOrientation() {
         return _actualDeviceOrientation;
     }
@@ -212,26 +455,38 @@ public class RCTCamera {
     }
 
     public void setCaptureMode(final int cameraType, final int captureMode) {
-        Camera camera = _cameras.get(cameraType);
-        if (camera == null) {
+        ParametersTransaction transaction = beginParametersTransaction(cameraType);
+        if (transaction == null) {
             return;
         }
 
         // Set (video) recording hint based on camera type. For video recording, setting
         // this hint can help reduce the time it takes to start recording.
-        Camera.Parameters parameters = camera.getParameters();
-        parameters.setRecordingHint(captureMode == RCTCameraModule.RCT_CAMERA_CAPTURE_MODE_VIDEO);
-        camera.setParameters(parameters);
+        try {
+            transaction.edit().setRecordingHint(captureMode == RCTCameraModule.RCT_CAMERA_CAPTURE_MODE_VIDEO);
+        } finally {
+            transaction.commit();
+        }
     }
 
 
+    /**
+     * Does nothing if the camera isn't open, see `RCTCameraViewFinder.onConfigure`.
+     */
     public void setCaptureQuality(int cameraType, String captureQuality) {
-        Camera camera = this.acquireCameraInstance(cameraType);
-        if (camera == null) {
+        ParametersTransaction transaction = beginParametersTransaction(cameraType);
+        if (transaction == null) {
             return;
         }
+        try {
+            setCaptureQuality(transaction, captureQuality);
+        } finally {
+            transaction.commit();
+        }
+    }
 
-        Camera.Parameters parameters = camera.getParameters();
+    private void setCaptureQuality(ParametersTransaction transaction, String captureQuality) {
+        Camera.Parameters parameters = transaction.get();
         Camera.Size pictureSize = null;
         List<Camera.Size> supportedSizes = parameters.getSupportedPictureSizes();
         switch (captureQuality) {
@@ -260,8 +515,7 @@ public class RCTCamera {
         }
 
         if (pictureSize != null) {
-            parameters.setPictureSize(pictureSize.width, pictureSize.height);
-            camera.setParameters(parameters);
+            transaction.edit().setPictureSize(pictureSize.width, pictureSize.height);
         }
     }
 
@@ -272,7 +526,7 @@ public class RCTCamera {
         }
 
         Camera.Size videoSize = null;
-        List<Camera.Size> supportedSizes = getSupportedVideoSizes(camera);
+        List<Camera.Size> supportedSizes = getSupportedVideoSizes(cameraType);
         CamcorderProfile cm = null;
         switch (captureQuality) {
             case RCTCameraModule.RCT_CAMERA_CAPTURE_QUALITY_LOW:
@@ -313,13 +567,23 @@ public class RCTCamera {
         return cm;
     }
 
+    /**
+     * Does nothing if the camera isn't open.
+     */
     public void setTorchMode(int cameraType, int torchMode) {
-        Camera camera = this.acquireCameraInstance(cameraType);
-        if (null == camera) {
+        ParametersTransaction transaction = beginParametersTransaction(cameraType);
+        if (transaction == null) {
             return;
         }
+        try {
+            setTorchMode(transaction, torchMode);
+        } finally {
+            transaction.commit();
+        }
+    }
 
-        Camera.Parameters parameters = camera.getParameters();
+    private void setTorchMode(ParametersTransaction transaction, int torchMode) {
+        Camera.Parameters parameters = transaction.get();
         String value = parameters.getFlashMode();
         switch (torchMode) {
             case RCTCameraModule.RCT_CAMERA_TORCH_MODE_ON:
@@ -331,19 +595,28 @@ public class RCTCamera {
         }
 
         List<String> flashModes = parameters.getSupportedFlashModes();
-        if (flashModes != null && flashModes.contains(value)) {
-            parameters.setFlashMode(value);
-            camera.setParameters(parameters);
+        if (flashModes != null && flashModes.contains(value) && !value.equals(parameters.getFlashMode())) {
+            transaction.edit().setFlashMode(value);
         }
     }
 
+    /**
+     * Does nothing if the camera isn't open.
+     */
     public void setFlashMode(int cameraType, int flashMode) {
-        Camera camera = this.acquireCameraInstance(cameraType);
-        if (null == camera) {
+        ParametersTransaction transaction = beginParametersTransaction(cameraType);
+        if (transaction == null) {
             return;
         }
+        try {
+            setFlashMode(transaction, flashMode);
+        } finally {
+            transaction.commit();
+        }
+    }
 
-        Camera.Parameters parameters = camera.getParameters();
+    private void setFlashMode(ParametersTransaction transaction, int flashMode) {
+        Camera.Parameters parameters = transaction.get();
         String value = parameters.getFlashMode();
         switch (flashMode) {
             case RCTCameraModule.RCT_CAMERA_FLASH_MODE_AUTO:
@@ -357,9 +630,8 @@ public class RCTCamera {
                 break;
         }
         List<String> flashModes = parameters.getSupportedFlashModes();
-        if (flashModes != null && flashModes.contains(value)) {
-            parameters.setFlashMode(value);
-            camera.setParameters(parameters);
+        if (flashModes != null && flashModes.contains(value) && !value.equals(parameters.getFlashMode())) {
+            transaction.edit().setFlashMode(value);
         }
     }
 
@@ -378,13 +650,14 @@ public class RCTCamera {
             rotation = (orientation - deviceOrientation * 90 + 360) % 360;
         }
         cameraInfo.rotation = rotation;
-        Camera.Parameters parameters = camera.getParameters();
-        parameters.setRotation(cameraInfo.rotation);
-
+        ParametersTransaction transaction = beginParametersTransaction(type);
+        if (transaction == null) {
+            return;
+        }
         try {
-            camera.setParameters(parameters);
-        } catch (Exception e) {
-            e.printStackTrace();
+            transaction.edit().setRotation(cameraInfo.rotation);
+        } finally {
+            transaction.commit();
         }
     }
 
@@ -396,13 +669,11 @@ public class RCTCamera {
 
         CameraInfoWrapper cameraInfo = _cameraInfos.get(type);
         int displayRotation;
-        int rotation;
+        int rotation = getRotationToDeviceOrientation(cameraInfo);
         int orientation = cameraInfo.info.orientation;
         if (cameraInfo.info.facing == Camera.CameraInfo.CAMERA_FACING_FRONT) {
-            rotation = (orientation + _actualDeviceOrientation * 90) % 360;
             displayRotation = (720 - orientation - _actualDeviceOrientation * 90) % 360;
         } else {
-            rotation = (orientation - _actualDeviceOrientation * 90 + 360) % 360;
             displayRotation = rotation;
         }
         cameraInfo.rotation = rotation;
@@ -411,22 +682,37 @@ public class RCTCamera {
         setAdjustedDeviceOrientation(rotation);
         camera.setDisplayOrientation(displayRotation);
 
-        Camera.Parameters parameters = camera.getParameters();
-        parameters.setRotation(cameraInfo.rotation);
+        ParametersTransaction transaction = beginParametersTransaction(type);
+        Camera.Parameters parameters = transaction.edit();
+        int width;
+        int height;
+        try {
+            parameters.setRotation(cameraInfo.rotation);
 
-        // set preview size
-        // defaults to highest resolution available
-        Camera.Size optimalPreviewSize = getBestSize(parameters.getSupportedPreviewSizes(), Integer.MAX_VALUE, Integer.MAX_VALUE);
-        int width = optimalPreviewSize.width;
-        int height = optimalPreviewSize.height;
+            // set preview size
+            // defaults to highest resolution available
+            Camera.Size optimalPreviewSize = getBestSize(parameters.getSupportedPreviewSizes(), Integer.MAX_VALUE, Integer.MAX_VALUE);
+            width = optimalPreviewSize.width;
+            height = optimalPreviewSize.height;
 
-        parameters.setPreviewSize(width, height);
-        try {
-            camera.setParameters(parameters);
-        } catch (Exception e) {
-            e.printStackTrace();
+            parameters.setPreviewSize(width, height);
+        } finally {
+            transaction.commit();
+        }
+
+        setPreviewSize(cameraInfo, width, height);
+    }
+
+    private int getRotationToDeviceOrientation(CameraInfoWrapper cameraInfo) {
+        int orientation = cameraInfo.info.orientation;
+        if (cameraInfo.info.facing == Camera.CameraInfo.CAMERA_FACING_FRONT) {
+            return (orientation + _actualDeviceOrientation * 90) % 360;
+        } else {
+            return (orientation - _actualDeviceOrientation * 90 + 360) % 360;
         }
+    }
 
+    private void setPreviewSize(CameraInfoWrapper cameraInfo, int width, int height) {
         if (cameraInfo.rotation == 0 || cameraInfo.rotation == 180) {
             cameraInfo.previewWidth = width;
             cameraInfo.previewHeight = height;
@@ -436,31 +722,93 @@ public class RCTCamera {
         }
     }
 
+    /**
+     * Lay the preview of a camera that isn't open yet out from its cached capabilities, if any,
+     * the same way `adjustPreviewLayout` will once it is opened.
+     */
+    private void estimatePreviewLayout(int type) {
+        CameraInfoWrapper cameraInfo = _cameraInfos.get(type);
+        RCTCameraCapabilities capabilities = ourCapabilityCache.get(_cameraTypeToIndex.get(type));
+        if (null == capabilities || capabilities.previewSizes.isEmpty()) {
+            return;
+        }
+        cameraInfo.rotation = getRotationToDeviceOrientation(cameraInfo);
+        RCTCameraCapabilities.Size previewSize = capabilities.getLargestPreviewSize();
+        setPreviewSize(cameraInfo, previewSize.width, previewSize.height);
+    }
+
     private RCTCamera(int deviceOrientation) {
         _cameras = new HashMap<>();
+        _parameters = new HashMap<>();
+        _transactions = new HashMap<>();
+        _appliedParameters = new HashMap<>();
+        _preparedParameters = new HashMap<>();
         _cameraInfos = new HashMap<>();
         _cameraTypeToIndex = new HashMap<>();
 
         _actualDeviceOrientation = deviceOrientation;
 
         // map camera types to camera indexes and collect cameras properties
+        // cameras are only opened once a view needs them, their capabilities come from the cache
         for (int i = 0; i < Camera.getNumberOfCameras(); i++) {
             Camera.CameraInfo info = new Camera.CameraInfo();
             Camera.getCameraInfo(i, info);
             if (info.facing == Camera.CameraInfo.CAMERA_FACING_FRONT && _cameraInfos.get(RCTCameraModule.RCT_CAMERA_TYPE_FRONT) == null) {
                 _cameraInfos.put(RCTCameraModule.RCT_CAMERA_TYPE_FRONT, new CameraInfoWrapper(info));
                 _cameraTypeToIndex.put(RCTCameraModule.RCT_CAMERA_TYPE_FRONT, i);
-                acquireCameraInstance(RCTCameraModule.RCT_CAMERA_TYPE_FRONT);
-                releaseCameraInstance(RCTCameraModule.RCT_CAMERA_TYPE_FRONT);
+                estimatePreviewLayout(RCTCameraModule.RCT_CAMERA_TYPE_FRONT);
             } else if (info.facing == Camera.CameraInfo.CAMERA_FACING_BACK && _cameraInfos.get(RCTCameraModule.RCT_CAMERA_TYPE_BACK) == null) {
                 _cameraInfos.put(RCTCameraModule.RCT_CAMERA_TYPE_BACK, new CameraInfoWrapper(info));
                 _cameraTypeToIndex.put(RCTCameraModule.RCT_CAMERA_TYPE_BACK, i);
-                acquireCameraInstance(RCTCameraModule.RCT_CAMERA_TYPE_BACK);
-                releaseCameraInstance(RCTCameraModule.RCT_CAMERA_TYPE_BACK);
+                estimatePreviewLayout(RCTCameraModule.RCT_CAMERA_TYPE_BACK);
             }
         }
     }
 
+    /**
+     * A batch of parameter changes for one camera, committed with a single `setParameters`.
+     *
+     *     ParametersTransaction transaction = camera.beginParametersTransaction(type);
+     *     try {
+     *         transaction.edit().setFlashMode(...);
+     *     } finally {
+     *         transaction.commit();
+     *     }
+     */
+    public class ParametersTransaction {
+        private final Thread _owner = Thread.currentThread();
+        private final int _type;
+        private final Camera _camera;
+        private final Camera.Parameters _parameters;
+        private int _depth = 0;
+        private boolean _dirty = false;
+
+        private ParametersTransaction(int type, Camera camera, Camera.Parameters parameters) {
+            _type = type;
+            _camera = camera;
+            _parameters = parameters;
+        }
+
+        /**
+         * The cached parameters, to be modified in place.
+         */
+        public Camera.Parameters edit() {
+            _dirty = true;
+            return _parameters;
+        }
+
+        /**
+         * The cached parameters, for reading only.
+         */
+        public Camera.Parameters get() {
+            return _parameters;
+        }
+
+        public void commit() {
+            commitParametersTransaction(this);
+        }
+    }
+
     private class CameraInfoWrapper {
         public final Camera.CameraInfo info;
         public int rotation = 0;
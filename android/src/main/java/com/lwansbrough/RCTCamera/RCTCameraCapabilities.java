@@ -0,0 +1,153 @@
+package com.lwansbrough.RCTCamera;
+
+import android.hardware.Camera;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What a camera supports, read once from its parameters and kept in {@link RCTCameraCapabilityCache}
+ * so it is known without opening the camera.
+ */
+class RCTCameraCapabilities {
+    public final List<Size> previewSizes;
+    public final List<Size> pictureSizes;
+    // null when every preview size can be recorded, see {Camera.Parameters#getSupportedVideoSizes}
+    public final List<Size> videoSizes;
+    // {min, max} in frames per second * 1000
+    public final List<int[]> previewFpsRanges;
+    public final List<String> focusModes;
+    public final List<String> flashModes;
+
+    private RCTCameraCapabilities(List<Size> previewSizes, List<Size> pictureSizes, List<Size> videoSizes,
+                                  List<int[]> previewFpsRanges, List<String> focusModes, List<String> flashModes) {
+        this.previewSizes = previewSizes;
+        this.pictureSizes = pictureSizes;
+        this.videoSizes = videoSizes;
+        this.previewFpsRanges = previewFpsRanges;
+        this.focusModes = focusModes;
+        this.flashModes = flashModes;
+    }
+
+    public static RCTCameraCapabilities fromParameters(Camera.Parameters parameters) {
+        List<int[]> fpsRanges = parameters.getSupportedPreviewFpsRange();
+        return new RCTCameraCapabilities(
+                Size.fromCameraSizes(parameters.getSupportedPreviewSizes()),
+                Size.fromCameraSizes(parameters.getSupportedPictureSizes()),
+                parameters.getSupportedVideoSizes() == null ? null : Size.fromCameraSizes(parameters.getSupportedVideoSizes()),
+                fpsRanges == null ? Collections.<int[]>emptyList() : fpsRanges,
+                nonNull(parameters.getSupportedFocusModes()),
+                nonNull(parameters.getSupportedFlashModes())
+        );
+    }
+
+    public static RCTCameraCapabilities fromJSON(JSONObject json) throws JSONException {
+        List<int[]> fpsRanges = new ArrayList<>();
+        JSONArray ranges = json.getJSONArray("previewFpsRanges");
+        for (int i = 0; i < ranges.length(); i++) {
+            JSONArray range = ranges.getJSONArray(i);
+            fpsRanges.add(new int[] { range.getInt(0), range.getInt(1) });
+        }
+        return new RCTCameraCapabilities(
+                Size.fromJSON(json.getJSONArray("previewSizes")),
+                Size.fromJSON(json.getJSONArray("pictureSizes")),
+                json.has("videoSizes") ? Size.fromJSON(json.getJSONArray("videoSizes")) : null,
+                fpsRanges,
+                stringsFromJSON(json.getJSONArray("focusModes")),
+                stringsFromJSON(json.getJSONArray("flashModes"))
+        );
+    }
+
+    public JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("previewSizes", Size.toJSON(previewSizes));
+        json.put("pictureSizes", Size.toJSON(pictureSizes));
+        if (videoSizes != null) {
+            json.put("videoSizes", Size.toJSON(videoSizes));
+        }
+        JSONArray ranges = new JSONArray();
+        for (int[] range : previewFpsRanges) {
+            ranges.put(new JSONArray().put(range[0]).put(range[1]));
+        }
+        json.put("previewFpsRanges", ranges);
+        json.put("focusModes", new JSONArray(focusModes));
+        json.put("flashModes", new JSONArray(flashModes));
+        return json;
+    }
+
+    public boolean hasFlash() {
+        return !flashModes.isEmpty();
+    }
+
+    /**
+     * The preview size with the largest area, which the preview defaults to.
+     */
+    public Size getLargestPreviewSize() {
+        Size largest = null;
+        for (Size size : previewSizes) {
+            if (largest == null || size.width * size.height > largest.width * largest.height) {
+                largest = size;
+            }
+        }
+        return largest;
+    }
+
+    private static List<String> nonNull(List<String> values) {
+        return values == null ? Collections.<String>emptyList() : values;
+    }
+
+    private static List<String> stringsFromJSON(JSONArray json) throws JSONException {
+        List<String> values = new ArrayList<>(json.length());
+        for (int i = 0; i < json.length(); i++) {
+            values.add(json.getString(i));
+        }
+        return values;
+    }
+
+    /**
+     * Counterpart of {Camera.Size}, which can't be created without an open camera.
+     */
+    public static class Size {
+        public final int width;
+        public final int height;
+
+        public Size(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        static List<Size> fromCameraSizes(List<Camera.Size> cameraSizes) {
+            List<Size> sizes = new ArrayList<>();
+            if (cameraSizes != null) {
+                for (Camera.Size size : cameraSizes) {
+                    sizes.add(new Size(size.width, size.height));
+                }
+            }
+            return sizes;
+        }
+
+        // sizes are stored as "<width>x<height>", like in the flattened camera parameters
+        static List<Size> fromJSON(JSONArray json) throws JSONException {
+            List<Size> sizes = new ArrayList<>(json.length());
+            for (int i = 0; i < json.length(); i++) {
+                String size = json.getString(i);
+                int separator = size.indexOf('x');
+                sizes.add(new Size(Integer.parseInt(size.substring(0, separator)), Integer.parseInt(size.substring(separator + 1))));
+            }
+            return sizes;
+        }
+
+        static JSONArray toJSON(List<Size> sizes) {
+            JSONArray json = new JSONArray();
+            for (Size size : sizes) {
+                json.put(size.width + "x" + size.height);
+            }
+            return json;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.lwansbrough.RCTCamera;
+
+import android.os.Build;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Camera capabilities by camera index, persisted to a small JSON file.
+ *
+ * The file is keyed by {@link Build#FINGERPRINT}: after a system update the cameras may support
+ * something else, so the whole cache is dropped and capabilities are read again as cameras get
+ * opened.
+ */
+class RCTCameraCapabilityCache {
+    private static final String TAG = "RCTCameraCapabilities";
+    private static final int VERSION = 1;
+
+    private final File _file;
+    private Map<Integer, RCTCameraCapabilities> _capabilities;
+
+    public RCTCameraCapabilityCache(File file) {
+        _file = file;
+    }
+
+    public synchronized RCTCameraCapabilities get(int cameraIndex) {
+        return load().get(cameraIndex);
+    }
+
+    /**
+     * Remember the capabilities of a camera and write the cache through to disk.
+     */
+    public synchronized void put(int cameraIndex, RCTCameraCapabilities capabilities) {
+        load().put(cameraIndex, capabilities);
+        save();
+    }
+
+    private Map<Integer, RCTCameraCapabilities> load() {
+        if (_capabilities != null) {
+            return _capabilities;
+        }
+        _capabilities = new HashMap<>();
+        if (_file == null || !_file.exists()) {
+            return _capabilities;
+        }
+
+        try {
+            JSONObject json = new JSONObject(read(_file));
+            if (json.getInt("version") != VERSION || !Build.FINGERPRINT.equals(json.getString("fingerprint"))) {
+                return _capabilities;
+            }
+            JSONObject cameras = json.getJSONObject("cameras");
+            Iterator<String> indexes = cameras.keys();
+            while (indexes.hasNext()) {
+                String index = indexes.next();
+                _capabilities.put(Integer.parseInt(index), RCTCameraCapabilities.fromJSON(cameras.getJSONObject(index)));
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "ignoring unreadable capability cache", e);
+            _capabilities.clear();
+        }
+        return _capabilities;
+    }
+
+    private void save() {
+        if (_file == null) {
+            return;
+        }
+
+        File temp = new File(_file.getPath() + ".tmp");
+        try {
+            JSONObject cameras = new JSONObject();
+            for (Map.Entry<Integer, RCTCameraCapabilities> entry : _capabilities.entrySet()) {
+                cameras.put(String.valueOf(entry.getKey()), entry.getValue().toJSON());
+            }
+            JSONObject json = new JSONObject();
+            json.put("version", VERSION);
+            json.put("fingerprint", Build.FINGERPRINT);
+            json.put("cameras", cameras);
+
+            // written aside and renamed so a crash never leaves a truncated cache behind
+            OutputStream output = new FileOutputStream(temp);
+            try {
+                output.write(json.toString().getBytes("UTF-8"));
+            } finally {
+                output.close();
+            }
+            if (!temp.renameTo(_file)) {
+                throw new IOException("could not rename " + temp);
+            }
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "could not save the capability cache", e);
+            temp.delete();
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                output.write(buffer, 0, count);
+            }
+            return output.toString("UTF-8");
+        } finally {
+            input.close();
+        }
+    }
+}
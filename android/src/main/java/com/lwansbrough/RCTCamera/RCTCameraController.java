@@ -0,0 +1,336 @@
+package com.lwansbrough.RCTCamera;
+
+import android.graphics.SurfaceTexture;
+import android.hardware.Camera;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * Drives the camera of a view finder from a dedicated looper thread.
+ *
+ * Opening, configuring, starting, stopping and releasing the camera are serialized on that thread
+ * as transitions of an explicit state machine, so the UI thread never waits on the camera. Since
+ * the camera is opened there, its preview callbacks are delivered on that thread as well.
+ *
+ *     CLOSED -> OPENING -> CONFIGURING -> STARTING -> PREVIEWING -> CLOSING -> CLOSED
+ */
+class RCTCameraController {
+    private static final String TAG = "RCTCameraController";
+
+    public enum State {
+        CLOSED,
+        OPENING,
+        CONFIGURING,
+        STARTING,
+        PREVIEWING,
+        CLOSING
+    }
+
+    /**
+     * Camera specific steps, run on the camera thread.
+     */
+    public interface Callback {
+        /**
+         * Open the camera of the given type, null if it isn't available.
+         */
+        Camera onOpen(int type);
+
+        /**
+         * Set the camera up for preview: parameters, preview buffers and callback.
+         */
+        void onConfigure(Camera camera, int type) throws Exception;
+
+        /**
+         * Stop the preview and let go of the camera, which the controller releases right after.
+         */
+        void onClose(Camera camera, int type);
+
+        /**
+         * The camera thread is about to stop, see `shutdown`.
+         */
+        void onShutdown();
+    }
+
+    // set once opening a camera failed while another one was open, see `setCameraType`
+    private static volatile boolean ourConcurrentOpenUnsupported = false;
+
+    private final Callback _callback;
+    private HandlerThread _thread;
+    private Handler _handler;
+    // set by `shutdown` until the next `start`, operations posted meanwhile are dropped
+    private boolean _isShutdown = false;
+
+    // only touched from the camera thread
+    private Camera _camera;
+    private SurfaceTexture _surface;
+    // System.nanoTime() when the preview was requested, 0 once its first frame arrived
+    private long _previewRequestTime = 0;
+    // whether that request is a switch from another camera
+    private boolean _isSwitching = false;
+    // releases the previous camera of a switch, see `setCameraType`
+    private Thread _releaseThread;
+
+    private volatile State _state = State.CLOSED;
+    private volatile int _cameraType;
+
+    public RCTCameraController(int type, Callback callback) {
+        _cameraType = type;
+        _callback = callback;
+    }
+
+    public State getState() {
+        return _state;
+    }
+
+    public int getCameraType() {
+        return _cameraType;
+    }
+
+    /**
+     * The camera, or null while it isn't open. Camera thread only.
+     */
+    public Camera getCamera() {
+        return _camera;
+    }
+
+    public synchronized boolean isCameraThread() {
+        return _handler != null && Looper.myLooper() == _handler.getLooper();
+    }
+
+    /**
+     * Run `runnable` on the camera thread, after every operation queued so far. Dropped once the
+     * controller is shut down.
+     */
+    public synchronized void post(Runnable runnable) {
+        if (_isShutdown) {
+            return;
+        }
+        if (_thread == null) {
+            _thread = new HandlerThread("RCTCameraThread");
+            _thread.start();
+            _handler = new Handler(_thread.getLooper());
+        }
+        _handler.post(runnable);
+    }
+
+    /**
+     * Open the camera and start previewing into `surface`.
+     */
+    public void start(final SurfaceTexture surface) {
+        final long requestTime = System.nanoTime();
+        synchronized (this) {
+            // e.g. the view was attached again
+            _isShutdown = false;
+        }
+        post(new Runnable() {
+            @Override
+            public void run() {
+                _surface = surface;
+                _previewRequestTime = requestTime;
+                _isSwitching = false;
+                open();
+            }
+        });
+    }
+
+    /**
+     * Stop the preview and release the camera, then release `surface` since the preview no
+     * longer draws into it. Once shut down, `shutdown` releases the surface instead.
+     */
+    public void stop(final SurfaceTexture surface) {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                close();
+                _surface = null;
+                if (surface != null) {
+                    surface.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * Switch to the camera of the given type, restarting the preview if it was running.
+     *
+     * The new camera is opened and configured before the previous one is released, which then
+     * happens on another thread. Devices that can't open both cameras at once fall back to
+     * releasing the previous camera first.
+     *
+     * The time from the request to the first frame of the new camera is reported as the switch
+     * latency.
+     */
+    public void setCameraType(final int type) {
+        final long requestTime = System.nanoTime();
+        post(new Runnable() {
+            @Override
+            public void run() {
+                if (_cameraType == type) {
+                    return;
+                }
+                boolean wasPreviewing = _state == State.PREVIEWING;
+                Camera previous = detach();
+                _cameraType = type;
+                _isSwitching = wasPreviewing;
+
+                boolean concurrent = previous != null && !ourConcurrentOpenUnsupported;
+                if (concurrent) {
+                    _previewRequestTime = requestTime;
+                    open();
+                    if (_state != State.CLOSED) {
+                        releaseInBackground(previous);
+                        return;
+                    }
+                }
+                release(previous);
+                _previewRequestTime = requestTime;
+                open();
+                if (concurrent && _state != State.CLOSED) {
+                    // the camera only opens once the other one is released
+                    ourConcurrentOpenUnsupported = true;
+                }
+            }
+        });
+    }
+
+    /**
+     * Release the camera and its surface, and stop the camera thread once every queued operation
+     * has run.
+     *
+     * The surface may only be destroyed after that (TextureView destroys it once detached from
+     * the window since API 24), so the `stop` that follows is dropped rather than starting a new
+     * camera thread.
+     */
+    public synchronized void shutdown() {
+        _isShutdown = true;
+        if (_thread == null) {
+            return;
+        }
+        final HandlerThread thread = _thread;
+        _handler.post(new Runnable() {
+            @Override
+            public void run() {
+                close();
+                if (_surface != null) {
+                    _surface.release();
+                    _surface = null;
+                }
+                _callback.onShutdown();
+                thread.quit();
+            }
+        });
+        _thread = null;
+        _handler = null;
+    }
+
+    /**
+     * To be called for every preview frame, reports the time to first frame of the preview.
+     */
+    public void onPreviewFrame() {
+        if (_previewRequestTime == 0) {
+            return;
+        }
+        long timeToFirstFrame = System.nanoTime() - _previewRequestTime;
+        _previewRequestTime = 0;
+        if (_isSwitching) {
+            RCTCamera.getInstance().getFrameStats().cameraSwitch.record(timeToFirstFrame);
+        } else {
+            RCTCamera.getInstance().getFrameStats().timeToFirstFrame.record(timeToFirstFrame);
+        }
+    }
+
+    private void open() {
+        if (_state != State.CLOSED || _surface == null) {
+            return;
+        }
+
+        try {
+            _state = State.OPENING;
+            // e.g. switching back to the camera released by the previous switch
+            awaitRelease();
+            long openTime = System.nanoTime();
+            _camera = _callback.onOpen(_cameraType);
+            if (_camera == null) {
+                Log.w(TAG, "no camera of type " + _cameraType);
+                _state = State.CLOSED;
+                return;
+            }
+            RCTCamera.getInstance().getFrameStats().cameraOpen.record(System.nanoTime() - openTime);
+
+            _state = State.CONFIGURING;
+            _callback.onConfigure(_camera, _cameraType);
+            _camera.setPreviewTexture(_surface);
+
+            _state = State.STARTING;
+            _camera.startPreview();
+            _state = State.PREVIEWING;
+        } catch (Exception e) {
+            Log.e(TAG, "failed to start the preview in state " + _state, e);
+            close();
+        }
+    }
+
+    private void close() {
+        release(detach());
+    }
+
+    /**
+     * Stop the preview and return the camera for the caller to release, null if none is open.
+     */
+    private Camera detach() {
+        if (_state == State.CLOSED) {
+            return null;
+        }
+
+        _state = State.CLOSING;
+        Camera camera = _camera;
+        try {
+            if (camera != null) {
+                _callback.onClose(camera, _cameraType);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "failed to close the camera", e);
+        } finally {
+            _camera = null;
+            _previewRequestTime = 0;
+            _state = State.CLOSED;
+        }
+        return camera;
+    }
+
+    private static void release(Camera camera) {
+        if (camera == null) {
+            return;
+        }
+        try {
+            camera.release();
+        } catch (Exception e) {
+            Log.e(TAG, "failed to release the camera", e);
+        }
+    }
+
+    private void releaseInBackground(final Camera camera) {
+        awaitRelease();
+        _releaseThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                release(camera);
+            }
+        }, "RCTCameraRelease");
+        _releaseThread.start();
+    }
+
+    private void awaitRelease() {
+        if (_releaseThread == null) {
+            return;
+        }
+        try {
+            _releaseThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        _releaseThread = null;
+    }
+}
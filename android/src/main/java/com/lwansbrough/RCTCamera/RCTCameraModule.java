@@ -28,12 +28,18 @@ import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.WritableNativeMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+import com.google.zxing.Result;
 
 import java.io.*;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -272,6 +278,7 @@ public class RCTCameraModule extends ReactContextBaseJavaModule
 
         // Unlock camera to make available for MediaRecorder. Note that this statement must be
         // executed before calling setCamera when configuring the MediaRecorder instance.
+        RCTCamera.getInstance().flushParameters(options.getInt("type"));
         mCamera.unlock();
 
         // Create new MediaRecorder instance.
@@ -409,6 +416,8 @@ public class RCTCameraModule extends ReactContextBaseJavaModule
         // MediaRecorder.prepare() call fails.
         if (mCamera != null) {
             mCamera.lock();
+            // MediaRecorder changes the camera parameters behind our back
+            RCTCamera.getInstance().invalidateParameters(mRecordingOptions.getInt("type"));
         }
 
         if (mRecordingPromise == null) {
@@ -656,6 +665,7 @@ public class RCTCameraModule extends ReactContextBaseJavaModule
         final Boolean shouldMirror = options.hasKey("mirrorImage") && options.getBoolean("mirrorImage");
 
         RCTCamera.getInstance().adjustCameraRotationToDeviceOrientation(options.getInt("type"), deviceOrientation);
+        RCTCamera.getInstance().flushParameters(options.getInt("type"));
         camera.setPreviewCallback(null);
         camera.takePicture(null, null, new Camera.PictureCallback() {
             @Override
@@ -750,13 +760,142 @@ public class RCTCameraModule extends ReactContextBaseJavaModule
 
     @ReactMethod
     public void hasFlash(ReadableMap options, final Promise promise) {
-        Camera camera = RCTCamera.getInstance().acquireCameraInstance(options.getInt("type"));
+        RCTCameraCapabilities capabilities = RCTCamera.getInstance().getCapabilities(options.getInt("type"));
+        if (null == capabilities) {
+            promise.reject("No camera found.");
+            return;
+        }
+        promise.resolve(capabilities.hasFlash());
+    }
+
+    /**
+     * Resolve with the preview frame pipeline counters and latency histograms.
+     *
+     * Per frame processor: frames delivered, dropped (superseded by a newer frame before being
+     * analysed) and processed, plus queue wait and processing time in milliseconds.
+     */
+    @ReactMethod
+    public void getFrameStats(final Promise promise) {
+        RCTCamera camera = RCTCamera.getInstance();
         if (null == camera) {
             promise.reject("No camera found.");
             return;
         }
-        List<String> flashModes = camera.getParameters().getSupportedFlashModes();
-        promise.resolve(null != flashModes && !flashModes.isEmpty());
+        promise.resolve(camera.getFrameStats().toWritableMap());
+    }
+
+    /**
+     * Decode the barcodes of the image files at `paths`, in parallel.
+     *
+     * A `CameraBarCodeFileDecodedAndroid` event with the `id` of the options is emitted as soon as
+     * each file is decoded, and the promise resolves once every file is.
+     */
+    @ReactMethod
+    public void decodeBarcodes(ReadableArray paths, ReadableMap options, final Promise promise) {
+        final String id = options.hasKey("id") ? options.getString("id") : null;
+        List<String> barCodeTypes = null;
+        if (options.hasKey("barCodeTypes")) {
+            ReadableArray types = options.getArray("barCodeTypes");
+            barCodeTypes = new ArrayList<String>(types.size());
+            for (int i = 0; i < types.size(); i++) {
+                barCodeTypes.add(types.getString(i));
+            }
+        }
+        int maxDimension = options.hasKey("maxDimension") ? options.getInt("maxDimension") : RCTBarcodeFileDecoder.DEFAULT_MAX_DIMENSION;
+        boolean multiple = options.hasKey("multiple") && options.getBoolean("multiple");
+
+        List<String> files = new ArrayList<String>(paths.size());
+        for (int i = 0; i < paths.size(); i++) {
+            files.add(paths.getString(i));
+        }
+
+        RCTBarcodeFileDecoder decoder = new RCTBarcodeFileDecoder(RCTBarcodeFrameProcessor.parseBarCodeTypes(barCodeTypes), maxDimension, multiple);
+        decoder.decode(files, new RCTBarcodeFileDecoder.Listener() {
+            @Override
+            public void onFileDecoded(int index, String path, Result[] results, Throwable error) {
+                WritableMap event = Arguments.createMap();
+                event.putString("id", id);
+                event.putInt("index", index);
+                event.putString("path", path);
+                WritableArray barcodes = Arguments.createArray();
+                if (results != null) {
+                    for (Result result : results) {
+                        WritableMap barcode = Arguments.createMap();
+                        barcode.putString("data", result.getText());
+                        barcode.putString("type", result.getBarcodeFormat().toString());
+                        barcodes.pushMap(barcode);
+                    }
+                }
+                event.putArray("barcodes", barcodes);
+                if (error != null) {
+                    event.putString("error", error.getMessage());
+                }
+                _reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit("CameraBarCodeFileDecodedAndroid", event);
+            }
+
+            @Override
+            public void onDone(int files, int decoded) {
+                WritableMap response = Arguments.createMap();
+                response.putString("id", id);
+                response.putInt("files", files);
+                response.putInt("decoded", decoded);
+                promise.resolve(response);
+            }
+        });
+    }
+
+    /**
+     * Start serving the preview frames as JPEG on 127.0.0.1, see `RCTFrameServer`. Resolves with
+     * the `port` and the `frameUrl` and `streamUrl` to load.
+     */
+    @ReactMethod
+    public void startFrameServer(ReadableMap options, final Promise promise) {
+        int port = options.hasKey("port") ? options.getInt("port") : 0;
+        try {
+            RCTFrameServer server = RCTFrameServer.start(port);
+            WritableMap response = Arguments.createMap();
+            response.putInt("port", server.getPort());
+            response.putString("frameUrl", server.getFrameUrl());
+            response.putString("streamUrl", server.getStreamUrl());
+            promise.resolve(response);
+        } catch (IOException e) {
+            promise.reject(e);
+        }
+    }
+
+    @ReactMethod
+    public void stopFrameServer(final Promise promise) {
+        RCTFrameServer.stop();
+        promise.resolve(null);
+    }
+
+    /**
+     * Record the raw preview frames to a file, see `RCTFrameRecording` for its format. Resolves
+     * with the `path` of the recording.
+     */
+    @ReactMethod
+    public void startFrameRecording(ReadableMap options, final Promise promise) {
+        File file;
+        if (options.hasKey("path")) {
+            file = new File(options.getString("path"));
+        } else {
+            String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
+            file = new File(_reactContext.getCacheDir(), "FRAMES_" + timeStamp + ".rctframes");
+        }
+        RCTFrameRecorder.start(file, options.hasKey("maxFrames") ? options.getInt("maxFrames") : 0);
+        WritableMap response = Arguments.createMap();
+        response.putString("path", file.getAbsolutePath());
+        promise.resolve(response);
+    }
+
+    /**
+     * Stop the frame recording, resolves with the number of `frames` recorded.
+     */
+    @ReactMethod
+    public void stopFrameRecording(final Promise promise) {
+        WritableMap response = Arguments.createMap();
+        response.putInt("frames", Math.max(0, RCTFrameRecorder.stop()));
+        promise.resolve(response);
     }
 
     private Throwable writeDataToFile(byte[] data, File file) {
@@ -866,6 +1005,8 @@ public class RCTCameraModule extends ReactContextBaseJavaModule
 
     @Override
     public void onHostDestroy() {
-        // ... do nothing
+        // the server and the recording are static, they would outlive the host
+        RCTFrameServer.stop();
+        RCTFrameRecorder.stop();
     }
 }
@@ -5,13 +5,22 @@
 package com.lwansbrough.RCTCamera;
 
 import android.content.Context;
+import android.graphics.RectF;
 import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.OrientationEventListener;
 import android.view.ViewGroup;
 import android.view.WindowManager;
 import android.view.View;
 
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class RCTCameraView extends ViewGroup {
     private final OrientationEventListener _orientationListener;
@@ -23,18 +32,41 @@ public class RCTCameraView extends ViewGroup {
     private String _captureQuality = "high";
     private int _torchMode = -1;
     private int _flashMode = -1;
+    // barcode scan area normalized to this view, see `setBarCodeScanArea`
+    private RectF _barCodeScanArea = null;
+    private boolean _barCodeMultiple = false;
+    private int _barCodeDeduplicationInterval = 0;
+    private RCTFrameQualityGate.Thresholds _barCodeQualityThresholds = null;
+    private final List<RCTFrameProcessor> _frameProcessors = new ArrayList<>();
+    private final Map<String, Float> _frameProcessorRates = new HashMap<>();
+    private final Handler _handler = new Handler(Looper.getMainLooper());
+    private int _frameStatsInterval = 0;
+    private final Runnable _frameStatsEmitter = new Runnable() {
+        @Override
+        public void run() {
+            emitFrameStats();
+            if (_frameStatsInterval > 0) {
+                _handler.postDelayed(this, _frameStatsInterval);
+            }
+        }
+    };
+
+    private final Runnable _layoutViewFinder = new Runnable() {
+        @Override
+        public void run() {
+            layoutViewFinder();
+        }
+    };
 
     public RCTCameraView(Context context) {
         super(context);
         this._context = context;
-        RCTCamera.createInstance(getDeviceOrientation(context));
+        RCTCamera.createInstance(context, getDeviceOrientation(context));
 
         _orientationListener = new OrientationEventListener(context, SensorManager.SENSOR_DELAY_NORMAL) {
             @Override
             public void onOrientationChanged(int orientation) {
-                if (setActualDeviceOrientation(_context)) {
-                    layoutViewFinder();
-                }
+                setActualDeviceOrientation(_context);
             }
         };
 
@@ -50,6 +82,12 @@ public class RCTCameraView extends ViewGroup {
         layoutViewFinder(left, top, right, bottom);
     }
 
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        _handler.removeCallbacks(_frameStatsEmitter);
+    }
+
     @Override
     public void onViewAdded(View child) {
         if (this._viewFinder == child) return;
@@ -67,14 +105,26 @@ public class RCTCameraView extends ViewGroup {
     public void setCameraType(final int type) {
         if (null != this._viewFinder) {
             this._viewFinder.setCameraType(type);
-            RCTCamera.getInstance().adjustPreviewLayout(type);
         } else {
             _viewFinder = new RCTCameraViewFinder(_context, type);
             if (-1 != this._flashMode) {
                 _viewFinder.setFlashMode(this._flashMode);
             }
             if (-1 != this._torchMode) {
-                _viewFinder.setFlashMode(this._torchMode);
+                _viewFinder.setTorchMode(this._torchMode);
+            }
+            _viewFinder.setCaptureMode(this._captureMode);
+            if (null != this._captureQuality) {
+                _viewFinder.setCaptureQuality(this._captureQuality);
+            }
+            _viewFinder.setBarCodeMultiple(_barCodeMultiple);
+            _viewFinder.setBarCodeDeduplicationInterval(_barCodeDeduplicationInterval);
+            _viewFinder.setBarCodeQualityThresholds(_barCodeQualityThresholds);
+            for (RCTFrameProcessor processor : _frameProcessors) {
+                _viewFinder.addFrameProcessor(processor);
+            }
+            for (Map.Entry<String, Float> rate : _frameProcessorRates.entrySet()) {
+                _viewFinder.setFrameProcessorRate(rate.getKey(), rate.getValue());
             }
             addView(_viewFinder);
         }
@@ -112,11 +162,19 @@ public class RCTCameraView extends ViewGroup {
         }
     }
 
-    public void setOrientation(int orientation) {
-        RCTCamera.getInstance().setOrientation(orientation);
-        if (this._viewFinder != null) {
-            layoutViewFinder();
+    public void setOrientation(final int orientation) {
+        if (this._viewFinder == null) {
+            RCTCamera.getInstance().setOrientation(orientation);
+            return;
         }
+        // reconfigures the open camera, see `RCTCamera.adjustPreviewLayout`
+        this._viewFinder.postToCameraThread(new Runnable() {
+            @Override
+            public void run() {
+                RCTCamera.getInstance().setOrientation(orientation);
+                post(_layoutViewFinder);
+            }
+        });
     }
 
     public void setBarcodeScannerEnabled(boolean barcodeScannerEnabled) {
@@ -127,19 +185,125 @@ public class RCTCameraView extends ViewGroup {
         RCTCamera.getInstance().setPreviewModeEnabled(previewModeEnabled);
     }
 
+    public void setPreviewFrameOptions(RCTPreviewFrameOptions previewFrameOptions) {
+        RCTCamera.getInstance().setPreviewFrameOptions(previewFrameOptions);
+    }
+
     public void setHeartRateModeEnabled(boolean heartRateModeEnabled) {
         RCTCamera.getInstance().setHeartRateModeEnabled(heartRateModeEnabled);
     }
 
+    /**
+     * Only scan barcodes in `area`, a rectangle normalized to this view, null scans the whole
+     * preview.
+     */
+    public void setBarCodeScanArea(RectF area) {
+        _barCodeScanArea = area;
+        layoutViewFinder();
+    }
+
+    /**
+     * Report every barcode of a frame at once, with its location, see
+     * {RCTBarcodeFrameProcessor#setMultiple}.
+     */
+    public void setBarCodeMultiple(boolean barCodeMultiple) {
+        _barCodeMultiple = barCodeMultiple;
+        if (this._viewFinder != null) {
+            this._viewFinder.setBarCodeMultiple(barCodeMultiple);
+        }
+    }
+
+    /**
+     * Report a barcode staying in view only once, unless it wasn't seen for `interval`
+     * milliseconds. 0 reports every decode.
+     */
+    public void setBarCodeDeduplicationInterval(int interval) {
+        _barCodeDeduplicationInterval = interval;
+        if (this._viewFinder != null) {
+            this._viewFinder.setBarCodeDeduplicationInterval(interval);
+        }
+    }
+
+    /**
+     * Skip frames too dark, too bright or too blurry to decode, null for the default thresholds.
+     */
+    public void setBarCodeQualityThresholds(RCTFrameQualityGate.Thresholds thresholds) {
+        _barCodeQualityThresholds = thresholds;
+        if (this._viewFinder != null) {
+            this._viewFinder.setBarCodeQualityThresholds(thresholds);
+        }
+    }
+
     public void setBarCodeTypes(List<String> types) {
         RCTCamera.getInstance().setBarCodeTypes(types);
     }
 
+    /**
+     * Emit the frame pipeline statistics as a `CameraStats` event every `interval` milliseconds,
+     * 0 disables the event.
+     */
+    public void setFrameStatsInterval(int interval) {
+        _frameStatsInterval = interval;
+        _handler.removeCallbacks(_frameStatsEmitter);
+        if (interval > 0) {
+            _handler.postDelayed(_frameStatsEmitter, interval);
+        }
+    }
+
+    private void emitFrameStats() {
+        ReactContext reactContext = RCTCameraModule.getReactContextSingleton();
+        if (reactContext == null) {
+            return;
+        }
+        reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit("CameraStats", RCTCamera.getInstance().getFrameStats().toWritableMap());
+    }
+
+    /**
+     * Run `processor` on every preview frame, next to the built-in barcode, preview and heart
+     * rate processors.
+     */
+    public void addFrameProcessor(RCTFrameProcessor processor) {
+        _frameProcessors.add(processor);
+        if (this._viewFinder != null) {
+            this._viewFinder.addFrameProcessor(processor);
+        }
+    }
+
+    public void removeFrameProcessor(RCTFrameProcessor processor) {
+        _frameProcessors.remove(processor);
+        if (this._viewFinder != null) {
+            this._viewFinder.removeFrameProcessor(processor);
+        }
+    }
+
+    /**
+     * Analyse at most `rate` frames per second with the processor named `name`, 0 analyses every
+     * preview frame.
+     */
+    public void setFrameProcessorRate(String name, float rate) {
+        _frameProcessorRates.put(name, rate);
+        if (this._viewFinder != null) {
+            this._viewFinder.setFrameProcessorRate(name, rate);
+        }
+    }
+
     private boolean setActualDeviceOrientation(Context context) {
-        int actualDeviceOrientation = getDeviceOrientation(context);
+        final int actualDeviceOrientation = getDeviceOrientation(context);
         if (_actualDeviceOrientation != actualDeviceOrientation) {
             _actualDeviceOrientation = actualDeviceOrientation;
-            RCTCamera.getInstance().setActualDeviceOrientation(_actualDeviceOrientation);
+            if (this._viewFinder == null) {
+                RCTCamera.getInstance().setActualDeviceOrientation(actualDeviceOrientation);
+                return true;
+            }
+            // reconfigures the open camera, see `RCTCamera.adjustPreviewLayout`
+            this._viewFinder.postToCameraThread(new Runnable() {
+                @Override
+                public void run() {
+                    RCTCamera.getInstance().setActualDeviceOrientation(actualDeviceOrientation);
+                    post(_layoutViewFinder);
+                }
+            });
             return true;
         } else {
             return false;
@@ -193,6 +357,26 @@ public class RCTCameraView extends ViewGroup {
         int viewFinderPaddingY = (int) ((height - viewfinderHeight) / 2);
 
         this._viewFinder.layout(viewFinderPaddingX, viewFinderPaddingY, viewFinderPaddingX + viewfinderWidth, viewFinderPaddingY + viewfinderHeight);
+
+        // the view finder may be larger (fill) or smaller (fit) than the view
+        RectF scanArea = null;
+        if (_barCodeScanArea != null && viewfinderWidth > 0 && viewfinderHeight > 0) {
+            scanArea = new RectF(
+                    (_barCodeScanArea.left * width - viewFinderPaddingX) / viewfinderWidth,
+                    (_barCodeScanArea.top * height - viewFinderPaddingY) / viewfinderHeight,
+                    (_barCodeScanArea.right * width - viewFinderPaddingX) / viewfinderWidth,
+                    (_barCodeScanArea.bottom * height - viewFinderPaddingY) / viewfinderHeight
+            );
+        }
+        this._viewFinder.setBarCodeScanArea(scanArea);
+        if (width > 0 && height > 0) {
+            this._viewFinder.setPreviewBounds(new RectF(
+                    viewFinderPaddingX / width,
+                    viewFinderPaddingY / height,
+                    (viewFinderPaddingX + viewfinderWidth) / width,
+                    (viewFinderPaddingY + viewfinderHeight) / height
+            ));
+        }
         this.postInvalidate(this.getLeft(), this.getTop(), this.getRight(), this.getBottom());
     }
 }
@@ -5,61 +5,77 @@
 package com.lwansbrough.RCTCamera;
 
 import android.content.Context;
+import android.graphics.RectF;
 import android.graphics.SurfaceTexture;
 import android.hardware.Camera;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.MotionEvent;
 import android.view.TextureView;
-import android.os.AsyncTask;
-import android.util.Base64;
-
-import com.facebook.react.bridge.Arguments;
-import com.facebook.react.bridge.ReactContext;
-import com.facebook.react.bridge.WritableMap;
-import com.facebook.react.modules.core.DeviceEventManagerModule;
 
 import java.lang.StringBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.EnumMap;
-import java.util.EnumSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import android.util.Log;
 
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.BinaryBitmap;
-import com.google.zxing.DecodeHintType;
-import com.google.zxing.MultiFormatReader;
-import com.google.zxing.PlanarYUVLuminanceSource;
-import com.google.zxing.Result;
-import com.google.zxing.common.HybridBinarizer;
-
-class RCTCameraViewFinder extends TextureView implements TextureView.SurfaceTextureListener, Camera.PreviewCallback {
-    private int _cameraType;
-    private int _captureMode;
-    private SurfaceTexture _surfaceTexture;
-    private boolean _isStarting;
-    private boolean _isStopping;
-    private Camera _camera;
+class RCTCameraViewFinder extends TextureView implements TextureView.SurfaceTextureListener, Camera.PreviewCallback, RCTCameraController.Callback {
+    // one more buffer for each frame decoded concurrently
+    private static final int PREVIEW_BUFFER_COUNT = RCTPreviewBufferPool.DEFAULT_BUFFER_COUNT + RCTBarcodeFrameProcessor.DECODE_CONCURRENCY - 1;
+    private volatile int _captureMode;
+    // props applied to the camera once it is open, see `onConfigure`
+    private volatile String _captureQuality;
+    private volatile int _torchMode = -1;
+    private volatile int _flashMode = -1;
+    // opens and drives the camera on its own thread, see `onOpen`, `onConfigure` and `onClose`
+    private final RCTCameraController _controller;
+    private volatile RCTPreviewBufferPool _bufferPool;
+    // size and format of the running preview, see `onPreviewFrame`
+    private volatile RCTFrameDescriptor _previewDescriptor;
+    // keeps increasing across previews, so frames of a closed preview still being processed
+    // never share a sequence with frames of the next one
+    private long _frameSequence = 0;
+    // preview buffer size of each camera type it last ran with, see `setCameraType`
+    private final ConcurrentHashMap<Integer, Integer> _bufferSizes = new ConcurrentHashMap<>();
     private float mFingerSpacing;
+    private final Handler _handler = new Handler(Looper.getMainLooper());
+    // parameter changes of the current batch of prop updates, only touched from the UI thread
+    private final List<Runnable> _parametersBatch = new ArrayList<>();
+    private final Runnable _commitParametersBatch = new Runnable() {
+        @Override
+        public void run() {
+            commitParametersBatch();
+        }
+    };
 
-    // concurrency lock for barcode scanner to avoid flooding the runtime
-    public static volatile boolean barcodeScannerTaskLock = false;
-    // concurrency lock for preview mode to avoid flooding the runtime
-    public static volatile boolean previewModeTaskLock = false;
+    // runs frame analysis off the camera thread, one bounded lane per consumer
+    private volatile RCTFrameScheduler _frameScheduler;
 
-    // reader instance for the barcode scanner
-    private final MultiFormatReader _multiFormatReader = new MultiFormatReader();
+    // analyses run on every preview frame, see `onPreviewFrame`
+    private final CopyOnWriteArrayList<RCTFrameProcessor> _frameProcessors = new CopyOnWriteArrayList<>();
+    private RCTFrameProcessor[] _enabledFrameProcessors = new RCTFrameProcessor[0];
+    private final ConcurrentHashMap<String, RCTFrameRateLimiter> _frameRateLimiters = new ConcurrentHashMap<>();
+    private final RCTBarcodeFrameProcessor _barcodeFrameProcessor;
 
     public RCTCameraViewFinder(Context context, int type) {
         super(context);
         this.setSurfaceTextureListener(this);
-        this._cameraType = type;
-        this.initBarcodeReader(RCTCamera.getInstance().getBarCodeTypes());
+        this._controller = new RCTCameraController(type, this);
+        RCTFrameProcessorHost host = new RCTReactFrameProcessorHost();
+        this._barcodeFrameProcessor = new RCTBarcodeFrameProcessor(host, RCTCamera.getInstance().getBarCodeTypes());
+        this.addFrameProcessor(_barcodeFrameProcessor);
+        this.addFrameProcessor(new RCTPreviewModeFrameProcessor(host, context.getCacheDir()));
+        this.addFrameProcessor(new RCTFrameServerProcessor(host));
+        this.addFrameProcessor(new RCTHeartRateFrameProcessor(host));
+        this.addFrameProcessor(new RCTFrameRecorder(host));
     }
 
     @Override
     public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
-        _surfaceTexture = surface;
-        startCamera();
+        _controller.start(surface);
     }
 
     @Override
@@ -68,473 +84,492 @@ class RCTCameraViewFinder extends TextureView implements TextureView.SurfaceText
 
     @Override
     public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
-        _surfaceTexture = null;
-        stopCamera();
-        return true;
+        // the camera may still draw into the surface until it is stopped, it is released then
+        _controller.stop(surface);
+        return false;
     }
 
     @Override
     public void onSurfaceTextureUpdated(SurfaceTexture surface) {
     }
 
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        _controller.shutdown();
+    }
+
     public double getRatio() {
-        int width = RCTCamera.getInstance().getPreviewWidth(this._cameraType);
-        int height = RCTCamera.getInstance().getPreviewHeight(this._cameraType);
+        int width = RCTCamera.getInstance().getPreviewWidth(_controller.getCameraType());
+        int height = RCTCamera.getInstance().getPreviewHeight(_controller.getCameraType());
         return ((float) width) / ((float) height);
     }
 
     public void setCameraType(final int type) {
-        if (this._cameraType == type) {
-            return;
+        // the buffers of the new camera are allocated while the current one is released
+        Integer bufferSize = _bufferSizes.get(type);
+        if (bufferSize != null && type != _controller.getCameraType()) {
+            RCTPreviewBufferPool.preallocate(bufferSize, PREVIEW_BUFFER_COUNT);
         }
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                stopPreview();
-                _cameraType = type;
-                startPreview();
-            }
-        }).start();
+        _controller.setCameraType(type);
+    }
+
+    /**
+     * Run `runnable` on the camera thread, where the camera and its parameters are driven from.
+     */
+    public void postToCameraThread(Runnable runnable) {
+        _controller.post(runnable);
     }
 
     public void setCaptureMode(final int captureMode) {
-        RCTCamera.getInstance().setCaptureMode(_cameraType, captureMode);
         this._captureMode = captureMode;
+        batchParameters(new Runnable() {
+            @Override
+            public void run() {
+                RCTCamera.getInstance().setCaptureMode(_controller.getCameraType(), captureMode);
+            }
+        });
     }
 
     public int getCaptureMode(){
       return this._captureMode;
     }
 
-    public void setCaptureQuality(String captureQuality) {
-        RCTCamera.getInstance().setCaptureQuality(_cameraType, captureQuality);
-    }
-
-    public void setTorchMode(int torchMode) {
-        RCTCamera.getInstance().setTorchMode(_cameraType, torchMode);
+    public void setCaptureQuality(final String captureQuality) {
+        this._captureQuality = captureQuality;
+        batchParameters(new Runnable() {
+            @Override
+            public void run() {
+                RCTCamera.getInstance().setCaptureQuality(_controller.getCameraType(), captureQuality);
+            }
+        });
     }
 
-    public void setFlashMode(int flashMode) {
-        RCTCamera.getInstance().setFlashMode(_cameraType, flashMode);
+    public void setTorchMode(final int torchMode) {
+        this._torchMode = torchMode;
+        batchParameters(new Runnable() {
+            @Override
+            public void run() {
+                RCTCamera.getInstance().setTorchMode(_controller.getCameraType(), torchMode);
+            }
+        });
     }
 
-    private void startPreview() {
-        if (_surfaceTexture != null) {
-            startCamera();
-        }
+    public void setFlashMode(final int flashMode) {
+        this._flashMode = flashMode;
+        batchParameters(new Runnable() {
+            @Override
+            public void run() {
+                RCTCamera.getInstance().setFlashMode(_controller.getCameraType(), flashMode);
+            }
+        });
     }
 
-    private void stopPreview() {
-        if (_camera != null) {
-            stopCamera();
+    /**
+     * Group the parameter changes of consecutive prop updates (e.g. when the view is mounted) in
+     * a single `setParameters` on the camera thread, once the current batch of updates has been
+     * applied on the UI thread. Changes made before the camera is open are dropped, `onConfigure`
+     * applies the latest props instead.
+     */
+    private void batchParameters(Runnable change) {
+        _parametersBatch.add(change);
+        if (_parametersBatch.size() == 1) {
+            _handler.post(_commitParametersBatch);
         }
     }
 
-    synchronized private void startCamera() {
-        if (!_isStarting) {
-            _isStarting = true;
-            try {
-                _camera = RCTCamera.getInstance().acquireCameraInstance(_cameraType);
-                Camera.Parameters parameters = _camera.getParameters();
-                // set autofocus
-                List<String> focusModes = parameters.getSupportedFocusModes();
-                if (focusModes.contains(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE)) {
-                    parameters.setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE);
+    private void commitParametersBatch() {
+        final Runnable[] changes = _parametersBatch.toArray(new Runnable[_parametersBatch.size()]);
+        _parametersBatch.clear();
+        _controller.post(new Runnable() {
+            @Override
+            public void run() {
+                if (_controller.getCamera() == null) {
+                    return;
                 }
-                // set picture size
-                // defaults to max available size
-                List<Camera.Size> supportedSizes;
-                if (_captureMode == RCTCameraModule.RCT_CAMERA_CAPTURE_MODE_STILL) {
-                    supportedSizes = parameters.getSupportedPictureSizes();
-                } else if (_captureMode == RCTCameraModule.RCT_CAMERA_CAPTURE_MODE_VIDEO) {
-                    supportedSizes = RCTCamera.getInstance().getSupportedVideoSizes(_camera);
-                } else {
-                    throw new RuntimeException("Unsupported capture mode:" + _captureMode);
+                RCTCamera.ParametersTransaction transaction = RCTCamera.getInstance().beginParametersTransaction(_controller.getCameraType());
+                try {
+                    for (Runnable change : changes) {
+                        change.run();
+                    }
+                } finally {
+                    if (transaction != null) {
+                        transaction.commit();
+                    }
                 }
-                Camera.Size optimalPictureSize = RCTCamera.getInstance().getBestSize(
-                        supportedSizes,
-                        Integer.MAX_VALUE,
-                        Integer.MAX_VALUE
-                );
-                parameters.setPictureSize(optimalPictureSize.width, optimalPictureSize.height);
-
-                if(RCTCamera.getInstance().isHeartRateModeEnabled()){
-                  parameters.setFlashMode(Camera.Parameters.FLASH_MODE_TORCH);
-
-                  List<Camera.Size> supportedPreviewSizes = parameters.getSupportedPreviewSizes();
-                  Camera.Size bestSize = null;
-
-                  for (Camera.Size size : supportedPreviewSizes) {
-                      android.util.Log.i("SupportedSize", "width: " + size.width + " height: " + size.height);
-                      if (bestSize == null) {
-                          bestSize = size;
-                          continue;
-                      }
-
-                      int resultArea = bestSize.width * bestSize.height;
-                      int newArea = size.width * size.height;
-
-                      if (newArea < resultArea) {
-                          bestSize = size;
-                      }
+            }
+        });
+    }
+
+    @Override
+    public Camera onOpen(int type) {
+        return RCTCamera.getInstance().acquireCameraInstance(type);
+    }
+
+    @Override
+    public void onConfigure(Camera camera, int type) throws Exception {
+        RCTCamera.ParametersTransaction transaction = RCTCamera.getInstance().beginParametersTransaction(type);
+        Camera.Parameters parameters = transaction.edit();
+        try {
+            // set autofocus
+            List<String> focusModes = parameters.getSupportedFocusModes();
+            if (focusModes.contains(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE)) {
+                parameters.setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE);
+            }
+            // set picture size
+            // defaults to max available size
+            List<Camera.Size> supportedSizes;
+            if (_captureMode == RCTCameraModule.RCT_CAMERA_CAPTURE_MODE_STILL) {
+                supportedSizes = parameters.getSupportedPictureSizes();
+            } else if (_captureMode == RCTCameraModule.RCT_CAMERA_CAPTURE_MODE_VIDEO) {
+                supportedSizes = RCTCamera.getInstance().getSupportedVideoSizes(type);
+            } else {
+                throw new RuntimeException("Unsupported capture mode:" + _captureMode);
+            }
+            Camera.Size optimalPictureSize = RCTCamera.getInstance().getBestSize(
+                    supportedSizes,
+                    Integer.MAX_VALUE,
+                    Integer.MAX_VALUE
+            );
+            parameters.setPictureSize(optimalPictureSize.width, optimalPictureSize.height);
+
+            // props set before the camera was open
+            RCTCamera.getInstance().setCaptureMode(type, _captureMode);
+            if (_captureQuality != null) {
+                RCTCamera.getInstance().setCaptureQuality(type, _captureQuality);
+            }
+            if (_torchMode != -1) {
+                RCTCamera.getInstance().setTorchMode(type, _torchMode);
+            }
+            if (_flashMode != -1) {
+                RCTCamera.getInstance().setFlashMode(type, _flashMode);
+            }
+
+            if(RCTCamera.getInstance().isHeartRateModeEnabled()){
+              parameters.setFlashMode(Camera.Parameters.FLASH_MODE_TORCH);
+
+              List<Camera.Size> supportedPreviewSizes = parameters.getSupportedPreviewSizes();
+              Camera.Size bestSize = null;
+
+              for (Camera.Size size : supportedPreviewSizes) {
+                  android.util.Log.i("SupportedSize", "width: " + size.width + " height: " + size.height);
+                  if (bestSize == null) {
+                      bestSize = size;
+                      continue;
                   }
 
-                  parameters.setPreviewSize(bestSize.width, bestSize.height);
-                  parameters.setPreviewFpsRange(30000, 30000);
-                  parameters.setFocusMode(Camera.Parameters.FOCUS_MODE_FIXED);
+                  int resultArea = bestSize.width * bestSize.height;
+                  int newArea = size.width * size.height;
 
-                  android.util.Log.i("PreviewSize", "width: " + bestSize.width + " height: " + bestSize.height);
-                }
+                  if (newArea < resultArea) {
+                      bestSize = size;
+                  }
+              }
 
-                _camera.setParameters(parameters);
-                _camera.setPreviewTexture(_surfaceTexture);
-                _camera.startPreview();
-                // send previews to `onPreviewFrame`
-                _camera.setPreviewCallback(this);
-            } catch (NullPointerException e) {
-                e.printStackTrace();
-            } catch (Exception e) {
-                e.printStackTrace();
-                stopCamera();
-            } finally {
-                _isStarting = false;
+              parameters.setPreviewSize(bestSize.width, bestSize.height);
+              parameters.setPreviewFpsRange(30000, 30000);
+              parameters.setFocusMode(Camera.Parameters.FOCUS_MODE_FIXED);
+
+              android.util.Log.i("PreviewSize", "width: " + bestSize.width + " height: " + bestSize.height);
             }
+        } finally {
+            transaction.commit();
         }
+        _frameScheduler = new RCTFrameScheduler(RCTFrameScheduler.getWorkerCount(RCTBarcodeFrameProcessor.DECODE_CONCURRENCY));
+        _frameScheduler.setConcurrency(RCTBarcodeFrameProcessor.NAME, RCTBarcodeFrameProcessor.DECODE_CONCURRENCY);
+        // size the preview buffers from what the camera actually negotiated
+        Camera.Parameters previewParameters = RCTCamera.getInstance().getParameters(type);
+        _bufferPool = new RCTPreviewBufferPool(camera, previewParameters, PREVIEW_BUFFER_COUNT);
+        _bufferSizes.put(type, _bufferPool.getBufferSize());
+        Camera.Size previewSize = previewParameters.getPreviewSize();
+        _previewDescriptor = new RCTFrameDescriptor(
+                previewSize.width,
+                previewSize.height,
+                previewParameters.getPreviewFormat(),
+                RCTCamera.getInstance().getPreviewRotation(type),
+                RCTCamera.getInstance().isPreviewMirrored(type),
+                0,
+                0
+        );
+        // send previews to `onPreviewFrame`
+        camera.setPreviewCallbackWithBuffer(this);
+
+        // the preview size of the camera decides the aspect ratio of the view finder
+        post(new Runnable() {
+            @Override
+            public void run() {
+                if (getParent() != null) {
+                    getParent().requestLayout();
+                }
+            }
+        });
     }
 
-    synchronized private void stopCamera() {
-        if (!_isStopping) {
-            _isStopping = true;
-            try {
-                if (_camera != null) {
-                    _camera.stopPreview();
-                    // stop sending previews to `onPreviewFrame`
-                    _camera.setPreviewCallback(null);
-                    RCTCamera.getInstance().releaseCameraInstance(_cameraType);
-                    _camera = null;
-                }
+    @Override
+    public void onShutdown() {
+        RCTPreviewBufferPool.clearSpares();
+    }
 
-            } catch (Exception e) {
-                e.printStackTrace();
-            } finally {
-                _isStopping = false;
+    @Override
+    public void onClose(Camera camera, int type) {
+        try {
+            camera.stopPreview();
+            // stop sending previews to `onPreviewFrame`
+            camera.setPreviewCallbackWithBuffer(null);
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (_frameScheduler != null) {
+                _frameScheduler.shutdown();
+                _frameScheduler = null;
             }
+            if (_bufferPool != null) {
+                _bufferPool.close();
+                _bufferPool = null;
+            }
+            _previewDescriptor = null;
+            RCTCamera.getInstance().detachCameraInstance(type);
         }
     }
 
     /**
-     * Parse barcodes as BarcodeFormat constants.
-     *
-     * Supports all iOS codes except [code138, code39mod43, itf14]
-     *
-     * Additionally supports [codabar, code128, maxicode, rss14, rssexpanded, upca, upceanextension]
+     * Only look for barcodes in `area`, normalized to the displayed preview, null scans the whole
+     * frame. See {RCTBarcodeFrameProcessor#setScanArea}.
      */
-    private BarcodeFormat parseBarCodeString(String c) {
-        if ("aztec".equals(c)) {
-            return BarcodeFormat.AZTEC;
-        } else if ("ean13".equals(c)) {
-            return BarcodeFormat.EAN_13;
-        } else if ("ean8".equals(c)) {
-            return BarcodeFormat.EAN_8;
-        } else if ("qr".equals(c)) {
-            return BarcodeFormat.QR_CODE;
-        } else if ("pdf417".equals(c)) {
-            return BarcodeFormat.PDF_417;
-        } else if ("upce".equals(c)) {
-            return BarcodeFormat.UPC_E;
-        } else if ("datamatrix".equals(c)) {
-            return BarcodeFormat.DATA_MATRIX;
-        } else if ("code39".equals(c)) {
-            return BarcodeFormat.CODE_39;
-        } else if ("code93".equals(c)) {
-            return BarcodeFormat.CODE_93;
-        } else if ("interleaved2of5".equals(c)) {
-            return BarcodeFormat.ITF;
-        } else if ("codabar".equals(c)) {
-            return BarcodeFormat.CODABAR;
-        } else if ("code128".equals(c)) {
-            return BarcodeFormat.CODE_128;
-        } else if ("maxicode".equals(c)) {
-            return BarcodeFormat.MAXICODE;
-        } else if ("rss14".equals(c)) {
-            return BarcodeFormat.RSS_14;
-        } else if ("rssexpanded".equals(c)) {
-            return BarcodeFormat.RSS_EXPANDED;
-        } else if ("upca".equals(c)) {
-            return BarcodeFormat.UPC_A;
-        } else if ("upceanextension".equals(c)) {
-            return BarcodeFormat.UPC_EAN_EXTENSION;
-        } else {
-            android.util.Log.v("RCTCamera", "Unsupported code.. [" + c + "]");
-            return null;
-        }
+    public void setBarCodeScanArea(RectF area) {
+        _barcodeFrameProcessor.setScanArea(area == null ? null : new RCTBarcodeFrameProcessor.Area(area.left, area.top, area.right, area.bottom));
     }
 
     /**
-     * Initialize the barcode decoder.
+     * Where the preview is displayed, normalized to the camera view, to report where barcodes
+     * were found.
      */
-    private void initBarcodeReader(List<String> barCodeTypes) {
-        EnumMap<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
-        EnumSet<BarcodeFormat> decodeFormats = EnumSet.noneOf(BarcodeFormat.class);
-
-        if (barCodeTypes != null) {
-            for (String code : barCodeTypes) {
-                BarcodeFormat format = parseBarCodeString(code);
-                if (format != null) {
-                    decodeFormats.add(format);
-                }
-            }
-        }
-
-        hints.put(DecodeHintType.POSSIBLE_FORMATS, decodeFormats);
-        _multiFormatReader.setHints(hints);
+    public void setPreviewBounds(RectF bounds) {
+        _barcodeFrameProcessor.setPreviewBounds(new RCTBarcodeFrameProcessor.Area(bounds.left, bounds.top, bounds.right, bounds.bottom));
     }
 
-    /**
-     * Spawn a barcode reader task if
-     *  - the barcode scanner is enabled (has a onBarCodeRead function)
-     *  - one isn't already running
-     *
-     * Capture a preview frame if captureMode is in preview mode
-     *
-     * See {Camera.PreviewCallback}
-     */
-    public void onPreviewFrame(byte[] data, Camera camera) {
-        if (RCTCamera.getInstance().isBarcodeScannerEnabled() && !RCTCameraViewFinder.barcodeScannerTaskLock) {
-            RCTCameraViewFinder.barcodeScannerTaskLock = true;
-            new ReaderAsyncTask(camera, data).execute();
-        }
-
-        if (RCTCamera.getInstance().isPreviewModeEnabled() && !RCTCameraViewFinder.previewModeTaskLock){
-            RCTCameraViewFinder.previewModeTaskLock = true;
-            new PreviewModeReaderAsyncTask(camera, data).execute();
-        }
-
-        if (RCTCamera.getInstance().isHeartRateModeEnabled()){
-            // RCTCameraViewFinder.previewModeTaskLock = true;
-            if (data == null) throw new NullPointerException();
-            Camera.Size size = camera.getParameters().getPreviewSize();
-            if (size == null) throw new NullPointerException();
-
-            int width = size.width;
-            int height = size.height;
+    public void setBarCodeMultiple(boolean multiple) {
+        _barcodeFrameProcessor.setMultiple(multiple);
+    }
 
-            int[] hsl = decodeYUV420SPtoLuma(data, height, width);
+    public void setBarCodeDeduplicationInterval(long interval) {
+        _barcodeFrameProcessor.setDeduplicationInterval(interval);
+    }
 
-            new HeartBeatAsyncTask(camera, hsl).execute();
-        }
+    public void setBarCodeQualityThresholds(RCTFrameQualityGate.Thresholds thresholds) {
+        _barcodeFrameProcessor.setQualityThresholds(thresholds);
     }
 
     /**
-     * Decode a YUV420SP image to Luma.
-     *
-     * @param yuv420sp
-     *            Byte array representing a YUV420SP image.
-     * @param width
-     *            Width of the image.
-     * @param height
-     *            Height of the image.
-     * @return Integer array representing the Luma image.
-     * @throws NullPointerException
-     *             if yuv420sp byte array is NULL.
+     * Register an analysis to run on the preview frames.
      */
-    public static int[] decodeYUV420SPtoLuma(byte[] yuv420sp, int width, int height) {
-        if (yuv420sp == null) throw new NullPointerException();
-
-//        int initx = height <= 300 ? 0 : (height - 300) / 2;
-//        int inity = width <= 300 ? 0 : (width - 300) / 2;
-        int imageHeight = height;// <= 300 ? height : 300;
-        int imageWidth = width;// <= 300 ? width : 300;
-
-//        android.util.Log.i("PreviewValues", "j: " + initx+ " i: " + inity);
-
-        final int frameSize = imageWidth * imageHeight;
-        int[] hsl = new int[frameSize];
+    public void addFrameProcessor(RCTFrameProcessor processor) {
+        _frameProcessors.addIfAbsent(processor);
+    }
 
+    public void removeFrameProcessor(RCTFrameProcessor processor) {
+        _frameProcessors.remove(processor);
+    }
 
-        for (int j = 0, yp = 0; j < imageHeight; j++) {
-            for (int i = 0; i < imageWidth; i++, yp++) {
-                int y = (0xff & (yuv420sp[yp])) - 16;
-                if (y < 0) y = 0;
-                hsl[yp] = y;
+    /**
+     * Limit the processor named `name` to `rate` frames per second, 0 analyses every frame.
+     */
+    public void setFrameProcessorRate(String name, float rate) {
+        RCTFrameRateLimiter limiter = _frameRateLimiters.get(name);
+        if (limiter == null) {
+            limiter = new RCTFrameRateLimiter();
+            RCTFrameRateLimiter previous = _frameRateLimiters.putIfAbsent(name, limiter);
+            if (previous != null) {
+                limiter = previous;
             }
         }
-        return hsl;
+        limiter.setRate(rate);
     }
 
-    private class HeartBeatAsyncTask extends AsyncTask<Void, Void, Void> {
-        private int[] data;
-        private final Camera camera;
-
-        HeartBeatAsyncTask(Camera camera, int[] data) {
-            this.camera = camera;
-            this.data = data;
+    /**
+     * Dispatch the frame once to every enabled frame processor.
+     *
+     * Processors limited to a lower rate than the camera's skip the frame right here, before
+     * anything is retained or allocated for them.
+     *
+     * Each processor gets its own lane of the frame scheduler, where the frame replaces any
+     * frame the processor has not started on yet. `data` is a pooled buffer shared by all of
+     * them: it goes back to the camera once every processor has either run or been dropped.
+     *
+     * See {Camera.PreviewCallback}
+     */
+    public void onPreviewFrame(byte[] data, Camera camera) {
+        RCTPreviewBufferPool bufferPool = _bufferPool;
+        RCTFrameScheduler frameScheduler = _frameScheduler;
+        RCTFrameDescriptor previewDescriptor = _previewDescriptor;
+        if (data == null || bufferPool == null || frameScheduler == null || previewDescriptor == null) {
+            return;
         }
 
-        @Override
-        protected Void doInBackground(Void... ignored) {
-            if (isCancelled()) {
-                return null;
+        _controller.onPreviewFrame();
+        RCTFrameStats frameStats = RCTCamera.getInstance().getFrameStats();
+        frameStats.recordFrame();
+
+        long now = System.nanoTime();
+        long sequence = _frameSequence++;
+
+        // only touched from the camera thread
+        RCTFrameProcessor[] enabled = _enabledFrameProcessors;
+        int count = 0;
+        for (RCTFrameProcessor processor : _frameProcessors) {
+            if (processor.isEnabled()) {
+                RCTFrameRateLimiter limiter = _frameRateLimiters.get(processor.getName());
+                if (limiter != null && !limiter.accept(now)) {
+                    frameStats.getProcessorStats(processor.getName()).throttled.incrementAndGet();
+                    continue;
+                }
+                if (count == enabled.length) {
+                    enabled = _enabledFrameProcessors = Arrays.copyOf(enabled, count + 1);
+                }
+                enabled[count++] = processor;
             }
+        }
 
-            try {
-
-                ReactContext reactContext = RCTCameraModule.getReactContextSingleton();
-                WritableMap event = Arguments.createMap();
-                event.putInt("hue", data[0]);
-                event.putInt("saturation", data[1]);
-                event.putInt("brightness", data[2]);
-
-                reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit("PreviewFrameReadAndroid", event);
+        // retain before queueing any task so a fast processor cannot recycle the buffer early
+        bufferPool.retain(data, count);
+        if (count == 0) {
+            return;
+        }
 
-            } catch (Throwable t) {
-                // meh
-            } finally {
-                _multiFormatReader.reset();
-                return null;
+        // the rotation follows the device orientation without the preview being reconfigured
+        RCTFrameDescriptor descriptor = previewDescriptor.forFrame(
+                RCTCamera.getInstance().getPreviewRotation(_controller.getCameraType()),
+                sequence,
+                now
+        );
+
+        for (int i = 0; i < count; i++) {
+            RCTFrameStats.ProcessorStats stats = frameStats.getProcessorStats(enabled[i].getName());
+            stats.delivered.incrementAndGet();
+            if (enabled[i] instanceof RCTFrameProcessor.Sequenced) {
+                ((RCTFrameProcessor.Sequenced) enabled[i]).onSubmit(descriptor);
             }
+            frameScheduler.submit(enabled[i].getName(), new FrameProcessorTask(enabled[i], new RCTPreviewFrame(data, descriptor, bufferPool), stats));
+            enabled[i] = null;
         }
     }
 
-    private class PreviewModeReaderAsyncTask extends AsyncTask<Void, Void, Void> {
-        private byte[] imageData;
-        private final Camera camera;
+    private static class FrameProcessorTask implements RCTFrameScheduler.FrameTask {
+        private final RCTFrameProcessor processor;
+        private final RCTPreviewFrame frame;
+        private final RCTFrameStats.ProcessorStats stats;
+        private final long submitTime = System.nanoTime();
 
-        PreviewModeReaderAsyncTask(Camera camera, byte[] imageData) {
-            this.camera = camera;
-            this.imageData = imageData;
+        FrameProcessorTask(RCTFrameProcessor processor, RCTPreviewFrame frame, RCTFrameStats.ProcessorStats stats) {
+            this.processor = processor;
+            this.frame = frame;
+            this.stats = stats;
         }
 
         @Override
-        protected Void doInBackground(Void... ignored) {
-            if (isCancelled()) {
-                return null;
-            }
-
+        public void run() {
+            long startTime = System.nanoTime();
+            stats.queueWait.record(startTime - submitTime);
             try {
-                ReactContext reactContext = RCTCameraModule.getReactContextSingleton();
-                WritableMap event = Arguments.createMap();
-                String encoded = Base64.encodeToString(imageData, Base64.DEFAULT);
-                event.putString("data", encoded);
-
-                reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit("PreviewFrameReadAndroid", event);
-
+                processor.process(frame);
+                stats.processed.incrementAndGet();
             } catch (Throwable t) {
-                // meh
+                stats.failed.incrementAndGet();
+                Log.e("RCTCamera", "frame processor " + processor.getName() + " failed", t);
             } finally {
-                _multiFormatReader.reset();
-                RCTCameraViewFinder.previewModeTaskLock = false;
-                return null;
+                frame.release();
+                stats.processingTime.record(System.nanoTime() - startTime);
             }
         }
-    }
-
-    private class ReaderAsyncTask extends AsyncTask<Void, Void, Void> {
-        private byte[] imageData;
-        private final Camera camera;
-
-        ReaderAsyncTask(Camera camera, byte[] imageData) {
-            this.camera = camera;
-            this.imageData = imageData;
-        }
 
         @Override
-        protected Void doInBackground(Void... ignored) {
-            if (isCancelled()) {
-                return null;
-            }
-
-            Camera.Size size = camera.getParameters().getPreviewSize();
-
-            int width = size.width;
-            int height = size.height;
-
-            // rotate for zxing if orientation is portrait
-            if (RCTCamera.getInstance().getActualDeviceOrientation() == 0) {
-              byte[] rotated = new byte[imageData.length];
-              for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                  rotated[x * height + height - y - 1] = imageData[x + y * width];
-                }
-              }
-              width = size.height;
-              height = size.width;
-              imageData = rotated;
-            }
-
-            try {
-                PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(imageData, width, height, 0, 0, width, height, false);
-                BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
-                Result result = _multiFormatReader.decodeWithState(bitmap);
-
-                ReactContext reactContext = RCTCameraModule.getReactContextSingleton();
-                WritableMap event = Arguments.createMap();
-                event.putString("data", result.getText());
-                event.putString("type", result.getBarcodeFormat().toString());
-                reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit("CameraBarCodeReadAndroid", event);
-
-            } catch (Throwable t) {
-                // meh
-            } finally {
-                _multiFormatReader.reset();
-                RCTCameraViewFinder.barcodeScannerTaskLock = false;
-                return null;
+        public void drop() {
+            if (processor instanceof RCTFrameProcessor.Sequenced) {
+                ((RCTFrameProcessor.Sequenced) processor).onDrop(frame.getDescriptor());
             }
+            frame.release();
+            stats.dropped.incrementAndGet();
         }
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        // Get the pointer ID
-        Camera.Parameters params = _camera.getParameters();
         int action = event.getAction();
 
-
+        // the event is recycled once handled, only its values are passed to the camera thread
         if (event.getPointerCount() > 1) {
             // handle multi-touch events
             if (action == MotionEvent.ACTION_POINTER_DOWN) {
                 mFingerSpacing = getFingerSpacing(event);
-            } else if (action == MotionEvent.ACTION_MOVE && params.isZoomSupported()) {
-                _camera.cancelAutoFocus();
-                handleZoom(event, params);
+            } else if (action == MotionEvent.ACTION_MOVE) {
+                float newDist = getFingerSpacing(event);
+                final int step = newDist > mFingerSpacing ? 1 : newDist < mFingerSpacing ? -1 : 0;
+                mFingerSpacing = newDist;
+                _controller.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        handleZoom(step);
+                    }
+                });
             }
         } else {
             // handle single touch events
             if (action == MotionEvent.ACTION_UP) {
-                handleFocus(event, params);
+                _controller.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        handleFocus();
+                    }
+                });
             }
         }
         return true;
     }
 
-    private void handleZoom(MotionEvent event, Camera.Parameters params) {
-        int maxZoom = params.getMaxZoom();
-        int zoom = params.getZoom();
-        float newDist = getFingerSpacing(event);
-        if (newDist > mFingerSpacing) {
-            //zoom in
-            if (zoom < maxZoom)
-                zoom++;
-        } else if (newDist < mFingerSpacing) {
-            //zoom out
-            if (zoom > 0)
-                zoom--;
+    private void handleZoom(int step) {
+        Camera camera = _controller.getCamera();
+        if (camera == null) {
+            return;
+        }
+        RCTCamera.ParametersTransaction transaction = RCTCamera.getInstance().beginParametersTransaction(_controller.getCameraType());
+        if (transaction == null) {
+            return;
+        }
+        try {
+            Camera.Parameters params = transaction.get();
+            if (!params.isZoomSupported()) {
+                return;
+            }
+            camera.cancelAutoFocus();
+            int maxZoom = params.getMaxZoom();
+            int zoom = params.getZoom();
+            if (step > 0) {
+                //zoom in
+                if (zoom < maxZoom)
+                    zoom++;
+            } else if (step < 0) {
+                //zoom out
+                if (zoom > 0)
+                    zoom--;
+            }
+            if (zoom != params.getZoom()) {
+                transaction.edit().setZoom(zoom);
+            }
+        } finally {
+            transaction.commit();
         }
-        mFingerSpacing = newDist;
-        params.setZoom(zoom);
-        _camera.setParameters(params);
     }
 
-    public void handleFocus(MotionEvent event, Camera.Parameters params) {
-        int pointerId = event.getPointerId(0);
-        int pointerIndex = event.findPointerIndex(pointerId);
-        // Get the pointer's current position
-        float x = event.getX(pointerIndex);
-        float y = event.getY(pointerIndex);
+    private void handleFocus() {
+        Camera camera = _controller.getCamera();
+        Camera.Parameters params = RCTCamera.getInstance().getParameters(_controller.getCameraType());
+        if (camera == null || params == null) {
+            return;
+        }
 
         List<String> supportedFocusModes = params.getSupportedFocusModes();
         if (supportedFocusModes != null && supportedFocusModes.contains(Camera.Parameters.FOCUS_MODE_AUTO)) {
-            _camera.autoFocus(new Camera.AutoFocusCallback() {
+            camera.autoFocus(new Camera.AutoFocusCallback() {
                 @Override
                 public void onAutoFocus(boolean b, Camera camera) {
                     // currently set to auto-focus on single touch
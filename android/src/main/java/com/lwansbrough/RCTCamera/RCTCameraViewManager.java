@@ -1,8 +1,10 @@
 package com.lwansbrough.RCTCamera;
 
+import android.graphics.RectF;
 import android.support.annotation.Nullable;
 
 import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.uimanager.*;
 import com.facebook.react.uimanager.annotations.ReactProp;
 
@@ -85,6 +87,85 @@ public class RCTCameraViewManager extends ViewGroupManager<RCTCameraView> {
         view.setHeartRateModeEnabled(heartRateModeEnabled);
     }
 
+    @ReactProp(name = "barCodeScanRate")
+    public void setBarCodeScanRate(RCTCameraView view, float barCodeScanRate) {
+        view.setFrameProcessorRate(RCTBarcodeFrameProcessor.NAME, barCodeScanRate);
+    }
+
+    @ReactProp(name = "previewFrameOptions")
+    public void setPreviewFrameOptions(RCTCameraView view, @Nullable ReadableMap previewFrameOptions) {
+        if (previewFrameOptions == null) {
+            view.setPreviewFrameOptions(null);
+            return;
+        }
+        int width = previewFrameOptions.hasKey("width") ? previewFrameOptions.getInt("width") : 0;
+        int quality = previewFrameOptions.hasKey("quality") ? previewFrameOptions.getInt("quality") : RCTPreviewFrameOptions.DEFAULT_QUALITY;
+        view.setPreviewFrameOptions(new RCTPreviewFrameOptions(
+                // the encoder rounds the width down to even, a 0 wide frame can't be compressed
+                width <= 0 ? 0 : Math.max(2, width),
+                previewFrameOptions.hasKey("format") ? previewFrameOptions.getString("format") : RCTPreviewFrameOptions.FORMAT_RAW,
+                Math.max(0, Math.min(100, quality)),
+                previewFrameOptions.hasKey("ringSlots") ? Math.max(0, Math.min(RCTFrameRingBuffer.MAX_SLOTS, previewFrameOptions.getInt("ringSlots"))) : 0,
+                previewFrameOptions.hasKey("motionThreshold") ? (float) previewFrameOptions.getDouble("motionThreshold") : 0,
+                previewFrameOptions.hasKey("keyframeInterval") ? previewFrameOptions.getInt("keyframeInterval") : 0
+        ));
+    }
+
+    @ReactProp(name = "previewFrameRate")
+    public void setPreviewFrameRate(RCTCameraView view, float previewFrameRate) {
+        view.setFrameProcessorRate(RCTPreviewModeFrameProcessor.NAME, previewFrameRate);
+    }
+
+    @ReactProp(name = "heartRateSampleRate")
+    public void setHeartRateSampleRate(RCTCameraView view, float heartRateSampleRate) {
+        view.setFrameProcessorRate(RCTHeartRateFrameProcessor.NAME, heartRateSampleRate);
+    }
+
+    @ReactProp(name = "frameStatsInterval")
+    public void setFrameStatsInterval(RCTCameraView view, int frameStatsInterval) {
+        view.setFrameStatsInterval(frameStatsInterval);
+    }
+
+    @ReactProp(name = "barCodeScanArea")
+    public void setBarCodeScanArea(RCTCameraView view, @Nullable ReadableMap barCodeScanArea) {
+        if (barCodeScanArea == null) {
+            view.setBarCodeScanArea(null);
+            return;
+        }
+        float x = (float) barCodeScanArea.getDouble("x");
+        float y = (float) barCodeScanArea.getDouble("y");
+        view.setBarCodeScanArea(new RectF(
+                x,
+                y,
+                x + (float) barCodeScanArea.getDouble("width"),
+                y + (float) barCodeScanArea.getDouble("height")
+        ));
+    }
+
+    @ReactProp(name = "barCodeMultiple")
+    public void setBarCodeMultiple(RCTCameraView view, boolean barCodeMultiple) {
+        view.setBarCodeMultiple(barCodeMultiple);
+    }
+
+    @ReactProp(name = "barCodeDeduplicationInterval")
+    public void setBarCodeDeduplicationInterval(RCTCameraView view, int barCodeDeduplicationInterval) {
+        view.setBarCodeDeduplicationInterval(barCodeDeduplicationInterval);
+    }
+
+    @ReactProp(name = "barCodeQualityThresholds")
+    public void setBarCodeQualityThresholds(RCTCameraView view, @Nullable ReadableMap barCodeQualityThresholds) {
+        if (barCodeQualityThresholds == null) {
+            view.setBarCodeQualityThresholds(null);
+            return;
+        }
+        RCTFrameQualityGate.Thresholds defaults = RCTFrameQualityGate.Thresholds.DEFAULT;
+        view.setBarCodeQualityThresholds(new RCTFrameQualityGate.Thresholds(
+                barCodeQualityThresholds.hasKey("minSharpness") ? (float) barCodeQualityThresholds.getDouble("minSharpness") : defaults.minSharpness,
+                barCodeQualityThresholds.hasKey("minLuma") ? (float) barCodeQualityThresholds.getDouble("minLuma") : defaults.minLuma,
+                barCodeQualityThresholds.hasKey("maxLuma") ? (float) barCodeQualityThresholds.getDouble("maxLuma") : defaults.maxLuma
+        ));
+    }
+
     @ReactProp(name = "barCodeTypes")
     public void setBarCodeTypes(RCTCameraView view, ReadableArray barCodeTypes) {
         if (barCodeTypes == null) {
@@ -0,0 +1,50 @@
+package com.lwansbrough.RCTCamera;
+
+import android.graphics.ImageFormat;
+
+/**
+ * Immutable description of a preview frame.
+ *
+ * Size and format are snapshotted once when the preview is configured, so frame processors never
+ * have to query the camera (an IPC round trip racing with parameter changes) on the hot path.
+ */
+public final class RCTFrameDescriptor {
+    // preview size, in sensor orientation
+    public final int width;
+    public final int height;
+    // one of the ImageFormat constants, NV21 unless configured otherwise
+    public final int format;
+    // clockwise rotation in degrees that makes the frame upright for the current device orientation
+    public final int rotation;
+    // whether the preview is displayed mirrored, as it is for front facing cameras
+    public final boolean mirrored;
+    // position of the frame since the preview started
+    public final long sequence;
+    // System.nanoTime() when the frame was received
+    public final long timestamp;
+
+    public RCTFrameDescriptor(int width, int height, int format, int rotation, boolean mirrored, long sequence, long timestamp) {
+        this.width = width;
+        this.height = height;
+        this.format = format;
+        this.rotation = rotation;
+        this.mirrored = mirrored;
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Descriptor of the next frame of the same preview.
+     */
+    public RCTFrameDescriptor forFrame(int rotation, long sequence, long timestamp) {
+        return new RCTFrameDescriptor(width, height, format, rotation, mirrored, sequence, timestamp);
+    }
+
+    /**
+     * Whether the frame is planar luma first (NV21, YV12...), i.e. its first width * height bytes
+     * are the Y plane.
+     */
+    public boolean hasLumaPlane() {
+        return format == ImageFormat.NV21 || format == ImageFormat.YV12 || format == ImageFormat.NV16;
+    }
+}
@@ -0,0 +1,46 @@
+package com.lwansbrough.RCTCamera;
+
+/**
+ * Analysis run on the camera preview frames.
+ *
+ * Processors are registered on the view finder (see {RCTCameraView#addFrameProcessor}). Every
+ * preview frame is dispatched once to each enabled processor; independent processors run in
+ * parallel, each on its own lane of the frame scheduler, and all of them read the same buffer.
+ */
+public interface RCTFrameProcessor {
+    /**
+     * Unique name of the processor, used to schedule its frames.
+     */
+    String getName();
+
+    /**
+     * Checked on the camera thread for every frame, must be cheap.
+     */
+    boolean isEnabled();
+
+    /**
+     * Analyse `frame`. Called on a frame worker thread, never concurrently for a single
+     * processor unless its lane was given a concurrency (see
+     * {RCTFrameScheduler#setConcurrency}). The frame data is shared with the other processors
+     * and must not be modified nor referenced once this method returns.
+     */
+    void process(RCTPreviewFrame frame);
+
+    /**
+     * Processor told which frames are queued for it, e.g. to emit the results of concurrently
+     * processed frames in frame order.
+     */
+    interface Sequenced extends RCTFrameProcessor {
+        /**
+         * The frame of `descriptor` is queued for `process`. Called on the camera thread, in
+         * frame order.
+         */
+        void onSubmit(RCTFrameDescriptor descriptor);
+
+        /**
+         * The frame of `descriptor` was dropped without being processed, e.g. superseded by a
+         * newer frame.
+         */
+        void onDrop(RCTFrameDescriptor descriptor);
+    }
+}
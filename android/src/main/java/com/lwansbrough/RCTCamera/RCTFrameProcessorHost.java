@@ -0,0 +1,23 @@
+package com.lwansbrough.RCTCamera;
+
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * What the frame processors need from their environment: settings, statistics and a way to send
+ * events.
+ *
+ * Live processors use `RCTReactFrameProcessorHost`, backed by the camera and the React bridge. A
+ * replay (see `RCTFrameReplaySource`) provides its own, to run the processors without either.
+ */
+interface RCTFrameProcessorHost {
+    RCTFrameStats getFrameStats();
+
+    RCTPreviewFrameOptions getPreviewFrameOptions();
+
+    WritableMap createMap();
+
+    WritableArray createArray();
+
+    void emit(String eventName, WritableMap event);
+}
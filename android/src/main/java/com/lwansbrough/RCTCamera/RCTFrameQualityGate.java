@@ -0,0 +1,100 @@
+package com.lwansbrough.RCTCamera;
+
+
+/**
+ * Rejects frames too dark, too bright or too blurry to ever decode, before they cost a binarize
+ * and decode.
+ *
+ * Sharpness is the variance of the Laplacian and brightness the mean luma, both sampled on a grid
+ * of the Y plane every `GRID_STEP` pixels, which takes a few microseconds on a preview frame.
+ */
+class RCTFrameQualityGate {
+    // pixels between the samples of the grid, in both directions
+    private static final int GRID_STEP = 8;
+
+    /**
+     * Thresholds of the gate, each of them can be disabled with 0 (or 255 for `maxLuma`).
+     */
+    public static class Thresholds {
+        // all disabled: the mean luma of the whole scanned region misjudges e.g. a bright phone
+        // screen in a dark room, so rejecting frames is left to apps that know their scenes
+        public static final Thresholds DEFAULT = new Thresholds(0, 0, 255);
+
+        // minimum variance of the Laplacian, motion blur and defocus flatten it
+        public final float minSharpness;
+        // bounds of the mean luma, 0 to 255
+        public final float minLuma;
+        public final float maxLuma;
+
+        public Thresholds(float minSharpness, float minLuma, float maxLuma) {
+            this.minSharpness = minSharpness;
+            this.minLuma = minLuma;
+            this.maxLuma = maxLuma;
+        }
+    }
+
+    /**
+     * What `check` measured of a frame, for decoding decisions that depend on it.
+     */
+    public static class Measurement {
+        // mean luma, 0 to 255
+        public float luma;
+        // variance of the Laplacian
+        public float sharpness;
+    }
+
+    private volatile Thresholds _thresholds = Thresholds.DEFAULT;
+
+    public void setThresholds(Thresholds thresholds) {
+        _thresholds = thresholds == null ? Thresholds.DEFAULT : thresholds;
+    }
+
+    /**
+     * Check the `width` x `height` region at `left`, `top` of a luma plane `dataWidth` bytes wide,
+     * into `measurement`. Returns null if the frame is worth decoding, otherwise the reason it
+     * isn't: `rejectedDark`, `rejectedBright` or `rejectedBlurry`.
+     */
+    public String check(byte[] data, int dataWidth, int left, int top, int width, int height, Measurement measurement) {
+        Thresholds thresholds = _thresholds;
+        long count = 0;
+        long lumaSum = 0;
+        long laplacianSum = 0;
+        long laplacianSquares = 0;
+        for (int y = top + 1; y < top + height - 1; y += GRID_STEP) {
+            int row = y * dataWidth;
+            for (int x = left + 1; x < left + width - 1; x += GRID_STEP) {
+                int i = row + x;
+                int center = data[i] & 0xff;
+                int laplacian = 4 * center
+                        - (data[i - 1] & 0xff)
+                        - (data[i + 1] & 0xff)
+                        - (data[i - dataWidth] & 0xff)
+                        - (data[i + dataWidth] & 0xff);
+                lumaSum += center;
+                laplacianSum += laplacian;
+                laplacianSquares += laplacian * laplacian;
+                count++;
+            }
+        }
+        if (count == 0) {
+            measurement.luma = 0;
+            measurement.sharpness = 0;
+            return null;
+        }
+
+        float mean = (float) laplacianSum / count;
+        measurement.luma = (float) lumaSum / count;
+        measurement.sharpness = (float) laplacianSquares / count - mean * mean;
+        if (measurement.luma < thresholds.minLuma) {
+            return "rejectedDark";
+        }
+        if (measurement.luma > thresholds.maxLuma) {
+            return "rejectedBright";
+        }
+        // a flat region may come out slightly negative from rounding
+        if (thresholds.minSharpness > 0 && measurement.sharpness < thresholds.minSharpness) {
+            return "rejectedBlurry";
+        }
+        return null;
+    }
+}
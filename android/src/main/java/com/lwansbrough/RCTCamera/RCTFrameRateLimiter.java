@@ -0,0 +1,36 @@
+package com.lwansbrough.RCTCamera;
+
+/**
+ * Lets preview frames through at a target rate.
+ *
+ * `accept` is only called from the camera callback thread; the rate may be changed from any
+ * thread, so both are synchronized.
+ */
+class RCTFrameRateLimiter {
+    private long _interval = 0;
+    private long _nextTime = 0;
+
+    /**
+     * Target rate in frames per second, 0 or less lets every frame through.
+     */
+    public synchronized void setRate(float rate) {
+        _interval = rate > 0 ? (long) (1000000000L / rate) : 0;
+        _nextTime = 0;
+    }
+
+    /**
+     * Whether the frame captured at `now` (in nanoseconds) should be analysed.
+     */
+    public synchronized boolean accept(long now) {
+        long interval = _interval;
+        if (interval == 0) {
+            return true;
+        }
+        if (now < _nextTime) {
+            return false;
+        }
+        // keep the average rate on target, unless we fell more than a frame behind
+        _nextTime = now - _nextTime > interval ? now + interval : _nextTime + interval;
+        return true;
+    }
+}
@@ -0,0 +1,193 @@
+package com.lwansbrough.RCTCamera;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Tees the live preview frames to a `RCTFrameRecording` file while a recording is started, to
+ * replay them off device with `RCTFrameReplaySource`.
+ *
+ * Frames are copied into buffers owned by the recording and their preview buffer is released at
+ * once, then a writer thread of the recording writes them. At most `QUEUE_SIZE` frames wait to be
+ * written: frames the storage can't keep up with are dropped, as counted by the `writeDropped`
+ * stat, rather than holding preview buffers the camera needs.
+ */
+class RCTFrameRecorder implements RCTFrameProcessor {
+    public static final String NAME = "recorder";
+    private static final String TAG = "RCTFrameRecorder";
+    // frames waiting to be written
+    private static final int QUEUE_SIZE = 4;
+
+    private static volatile Recording ourRecording;
+
+    private final RCTFrameProcessorHost _host;
+
+    public RCTFrameRecorder(RCTFrameProcessorHost host) {
+        _host = host;
+    }
+
+    /**
+     * Start recording the preview frames to `file`, up to `maxFrames` of them (0 for no limit).
+     * The file is created with the size and format of the first frame.
+     */
+    public static synchronized void start(File file, int maxFrames) {
+        stop();
+        ourRecording = new Recording(file, maxFrames);
+    }
+
+    /**
+     * Stop the recording once the queued frames are written, returns the number of frames
+     * recorded, -1 if there was no recording.
+     */
+    public static synchronized int stop() {
+        Recording recording = ourRecording;
+        if (recording == null) {
+            return -1;
+        }
+        ourRecording = null;
+        return recording.close();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        Recording recording = ourRecording;
+        return recording != null && !recording.isFull();
+    }
+
+    @Override
+    public void process(RCTPreviewFrame frame) {
+        Recording recording = ourRecording;
+        boolean queued = recording != null && recording.queue(frame);
+        frame.release();
+        if (recording != null && !queued) {
+            _host.getFrameStats().getProcessorStats(NAME).increment("writeDropped");
+        }
+    }
+
+    private static class Recording implements Runnable {
+        private final File _file;
+        private final int _maxFrames;
+        // copies of the frames to write, and the buffers they are copied into once written
+        private final ArrayBlockingQueue<Entry> _pending = new ArrayBlockingQueue<>(QUEUE_SIZE + 1);
+        private final ArrayBlockingQueue<Entry> _free = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        private final Thread _thread;
+        // writer thread only
+        private RCTFrameRecording.Writer _writer;
+        private volatile int _frames = 0;
+        private volatile boolean _full = false;
+        private boolean _closed = false;
+
+        Recording(File file, int maxFrames) {
+            _file = file;
+            _maxFrames = maxFrames;
+            for (int i = 0; i < QUEUE_SIZE; i++) {
+                _free.add(new Entry());
+            }
+            _thread = new Thread(this, "RCTFrameRecorder");
+            _thread.setDaemon(true);
+            _thread.start();
+        }
+
+        boolean isFull() {
+            return _full;
+        }
+
+        /**
+         * Copy `frame` to the queue of frames to write, false if the queue is full.
+         */
+        synchronized boolean queue(RCTPreviewFrame frame) {
+            if (_closed || _full) {
+                return true;
+            }
+            Entry entry = _free.poll();
+            if (entry == null) {
+                return false;
+            }
+            byte[] data = frame.getData();
+            if (entry.data == null || entry.data.length < data.length) {
+                entry.data = new byte[data.length];
+            }
+            System.arraycopy(data, 0, entry.data, 0, data.length);
+            entry.length = data.length;
+            entry.descriptor = frame.getDescriptor();
+            _pending.add(entry);
+            return true;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Entry entry = _pending.take();
+                    if (entry.descriptor == null) {
+                        break;
+                    }
+                    write(entry);
+                    _free.add(entry);
+                }
+            } catch (InterruptedException e) {
+                // closing
+            }
+            if (_writer != null) {
+                try {
+                    _writer.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "Could not close the recording", e);
+                }
+            }
+        }
+
+        private void write(Entry entry) {
+            if (_full) {
+                return;
+            }
+            RCTFrameDescriptor descriptor = entry.descriptor;
+            try {
+                if (_writer == null) {
+                    _writer = new RCTFrameRecording.Writer(_file, descriptor.width, descriptor.height, descriptor.format);
+                }
+                if (!_writer.write(entry.data, entry.length, descriptor)) {
+                    // e.g. the preview size changed, the recording only holds one size
+                    Log.w(TAG, "Skipped a " + descriptor.width + "x" + descriptor.height + " frame");
+                }
+                _frames = _writer.getFrames();
+                _full = _maxFrames > 0 && _frames >= _maxFrames;
+            } catch (IOException e) {
+                Log.e(TAG, "Could not record a frame", e);
+                _full = true;
+            }
+        }
+
+        /**
+         * Write the queued frames, close the file and return the number of frames recorded.
+         */
+        int close() {
+            synchronized (this) {
+                _closed = true;
+                // the queue has room for this end marker past the QUEUE_SIZE entries
+                _pending.add(new Entry());
+            }
+            try {
+                _thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return _frames;
+        }
+    }
+
+    private static class Entry {
+        byte[] data;
+        int length;
+        // null for the end of the recording
+        RCTFrameDescriptor descriptor;
+    }
+}
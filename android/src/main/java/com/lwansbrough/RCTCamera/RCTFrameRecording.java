@@ -0,0 +1,160 @@
+package com.lwansbrough.RCTCamera;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * File format of preview frame recordings, see `RCTFrameRecorder` and `RCTFrameReplaySource`.
+ *
+ * Plain Java, so recordings can be read off device. Big endian, as written by DataOutputStream:
+ *
+ *   header  4 bytes magic 'RCTF', int version, int width, int height, int format (an
+ *           ImageFormat constant, NV21 is 17)
+ *   frame   long timestamp (System.nanoTime() when received, ns), int rotation (degrees making
+ *           the frame upright), int flags (bit 0: displayed mirrored), int length, then `length`
+ *           bytes of frame data
+ *
+ * Frames follow each other until the end of the file. Every frame has the size and format of the
+ * header.
+ */
+final class RCTFrameRecording {
+    public static final int MAGIC = 0x52435446;
+    public static final int VERSION = 1;
+    public static final int FLAG_MIRRORED = 1;
+
+    private RCTFrameRecording() {
+    }
+
+    static class Writer implements Closeable {
+        private final DataOutputStream _out;
+        private final int _width;
+        private final int _height;
+        private final int _format;
+        private int _frames = 0;
+
+        Writer(File file, int width, int height, int format) throws IOException {
+            _out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+            _width = width;
+            _height = height;
+            _format = format;
+            _out.writeInt(MAGIC);
+            _out.writeInt(VERSION);
+            _out.writeInt(width);
+            _out.writeInt(height);
+            _out.writeInt(format);
+        }
+
+        /**
+         * Append a frame, unless its size or format differs from the recording's. Returns whether
+         * it was written.
+         */
+        public synchronized boolean write(byte[] data, int length, RCTFrameDescriptor descriptor) throws IOException {
+            if (descriptor.width != _width || descriptor.height != _height || descriptor.format != _format) {
+                return false;
+            }
+            _out.writeLong(descriptor.timestamp);
+            _out.writeInt(descriptor.rotation);
+            _out.writeInt(descriptor.mirrored ? FLAG_MIRRORED : 0);
+            _out.writeInt(length);
+            _out.write(data, 0, length);
+            _frames++;
+            return true;
+        }
+
+        public synchronized int getFrames() {
+            return _frames;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            _out.close();
+        }
+    }
+
+    static class Reader implements Closeable {
+        private final DataInputStream _in;
+        private final int _width;
+        private final int _height;
+        private final int _format;
+        private long _sequence = 0;
+        private byte[] _data;
+        private RCTFrameDescriptor _descriptor;
+
+        Reader(File file) throws IOException {
+            _in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+            if (_in.readInt() != MAGIC) {
+                _in.close();
+                throw new IOException("Not a frame recording: " + file);
+            }
+            int version = _in.readInt();
+            if (version != VERSION) {
+                _in.close();
+                throw new IOException("Unsupported frame recording version " + version);
+            }
+            _width = _in.readInt();
+            _height = _in.readInt();
+            _format = _in.readInt();
+        }
+
+        public int getWidth() {
+            return _width;
+        }
+
+        public int getHeight() {
+            return _height;
+        }
+
+        public int getFormat() {
+            return _format;
+        }
+
+        /**
+         * Read the next frame, false at the end of the recording. A truncated last frame, e.g. of
+         * a recording that wasn't stopped, counts as the end.
+         */
+        public boolean next() throws IOException {
+            long timestamp;
+            try {
+                timestamp = _in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            try {
+                int rotation = _in.readInt();
+                int flags = _in.readInt();
+                int length = _in.readInt();
+                // a new buffer per frame, processors may hold on to it
+                _data = new byte[length];
+                _in.readFully(_data);
+                _descriptor = new RCTFrameDescriptor(_width, _height, _format, rotation, (flags & FLAG_MIRRORED) != 0, _sequence++, timestamp);
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Data of the frame last read by `next`.
+         */
+        public byte[] getData() {
+            return _data;
+        }
+
+        public RCTFrameDescriptor getDescriptor() {
+            return _descriptor;
+        }
+
+        @Override
+        public void close() throws IOException {
+            _in.close();
+        }
+    }
+}
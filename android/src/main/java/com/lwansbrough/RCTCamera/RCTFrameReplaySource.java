@@ -0,0 +1,92 @@
+package com.lwansbrough.RCTCamera;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays a `RCTFrameRecording` into frame processors, in place of the camera, to benchmark or
+ * regression-test the analysis pipeline off device.
+ *
+ * Frames are handed to each processor in turn on the calling thread, regardless of
+ * `isEnabled`, and the processing time of each processor is recorded in `getFrameStats`. The
+ * unit tests build the processors with a `RCTJavaFrameProcessorHost` to collect their events
+ * without a React bridge, see `RCTFrameReplayTest` and `RCTFrameReplayTool`.
+ *
+ * The replay, the barcode and heart rate processors and preview mode writing to a ring file are
+ * plain Java. Preview mode otherwise encodes with the Android framework (`Base64`, `YuvImage`).
+ */
+class RCTFrameReplaySource {
+    private final File _file;
+    private final List<RCTFrameProcessor> _processors = new ArrayList<>();
+    private final RCTFrameStats _frameStats;
+
+    /**
+     * `frameStats` receives the frame counts and processing times, usually that of the host of
+     * the processors.
+     */
+    public RCTFrameReplaySource(File file, RCTFrameStats frameStats) {
+        _file = file;
+        _frameStats = frameStats;
+    }
+
+    public void addFrameProcessor(RCTFrameProcessor processor) {
+        _processors.add(processor);
+    }
+
+    public RCTFrameStats getFrameStats() {
+        return _frameStats;
+    }
+
+    /**
+     * Replay every frame of the recording. With `paced`, frames are handed out at the pace they
+     * were recorded at, otherwise as fast as the processors go. Returns the number of frames.
+     */
+    public int replay(boolean paced) throws IOException, InterruptedException {
+        RCTFrameRecording.Reader reader = new RCTFrameRecording.Reader(_file);
+        try {
+            int frames = 0;
+            long firstTimestamp = 0;
+            long startTime = System.nanoTime();
+            while (reader.next()) {
+                RCTFrameDescriptor descriptor = reader.getDescriptor();
+                if (frames == 0) {
+                    firstTimestamp = descriptor.timestamp;
+                }
+                if (paced) {
+                    long wait = (descriptor.timestamp - firstTimestamp) - (System.nanoTime() - startTime);
+                    if (wait > 0) {
+                        Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+                    }
+                }
+                _frameStats.recordFrame();
+                for (RCTFrameProcessor processor : _processors) {
+                    process(processor, reader.getData(), descriptor);
+                }
+                frames++;
+            }
+            return frames;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void process(RCTFrameProcessor processor, byte[] data, RCTFrameDescriptor descriptor) {
+        RCTFrameStats.ProcessorStats stats = _frameStats.getProcessorStats(processor.getName());
+        stats.delivered.incrementAndGet();
+        long startTime = System.nanoTime();
+        try {
+            if (processor instanceof RCTFrameProcessor.Sequenced) {
+                ((RCTFrameProcessor.Sequenced) processor).onSubmit(descriptor);
+            }
+            processor.process(new RCTPreviewFrame(data, descriptor, null));
+            stats.processed.incrementAndGet();
+        } catch (Throwable t) {
+            stats.failed.incrementAndGet();
+            t.printStackTrace();
+        } finally {
+            stats.processingTime.record(System.nanoTime() - startTime);
+        }
+    }
+}
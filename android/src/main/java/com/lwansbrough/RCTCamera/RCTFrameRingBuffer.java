@@ -0,0 +1,141 @@
+package com.lwansbrough.RCTCamera;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A fixed size ring of frame slots in a memory-mapped file, so consumers read exported frames
+ * from the file rather than through the bridge.
+ *
+ * Layout, little endian:
+ *
+ *   file header  int magic 'RCTR', int version, int slot count, int slot capacity
+ *   slot         long sequence, long timestamp (ns), int width, int height, int format,
+ *                int rotation, int size, int reserved, then `slot capacity` bytes of frame
+ *
+ * Slot `i` starts at `HEADER_SIZE + i * (SLOT_HEADER_SIZE + capacity)`. The sequence of a slot is
+ * -1 while it is being written: a reader should read the sequence, the frame, then the sequence
+ * again, and drop the frame if it changed.
+ *
+ * MappedByteBuffer puts are plain stores, so the writer fences them (see `fence`) between setting
+ * the sequence to -1, writing the frame and publishing the new sequence. A reader in another
+ * thread needs the matching barriers between its reads, e.g. volatile reads or an
+ * `std::atomic_thread_fence` in native code.
+ */
+class RCTFrameRingBuffer {
+    public static final int MAGIC = 0x52544352;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int SLOT_HEADER_SIZE = 40;
+    // more slots only add latency for a consumer that keeps up, and memory if it doesn't
+    public static final int MAX_SLOTS = 64;
+
+    // formats of the slot header
+    public static final int FORMAT_RAW = 1;
+    public static final int FORMAT_GRAYSCALE = 2;
+    public static final int FORMAT_JPEG = 3;
+
+    private final File _file;
+    private final int _slots;
+    private final int _capacity;
+    private final MappedByteBuffer _buffer;
+    private long _sequence = 0;
+    // written then read around the stores to publish, see `fence`
+    private volatile int _fence;
+
+    /**
+     * Map a ring of `slots` slots of `capacity` bytes into `file`. Throws if `slots` is out of 1
+     * to `MAX_SLOTS` or the file would be larger than 2 GB, which can't be mapped.
+     */
+    public RCTFrameRingBuffer(File file, int slots, int capacity) throws IOException {
+        _file = file;
+        _slots = slots;
+        _capacity = capacity;
+
+        if (slots < 1 || slots > MAX_SLOTS) {
+            throw new IOException("Invalid frame ring slot count " + slots);
+        }
+        long size = HEADER_SIZE + (long) slots * (SLOT_HEADER_SIZE + capacity);
+        if (capacity < 0 || size > Integer.MAX_VALUE) {
+            throw new IOException("Frame ring buffer too large: " + slots + " slots of " + capacity + " bytes");
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(size);
+            // the mapping stays valid once the file is closed
+            _buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            raf.close();
+        }
+        _buffer.order(ByteOrder.LITTLE_ENDIAN);
+        _buffer.putInt(0, MAGIC);
+        _buffer.putInt(4, VERSION);
+        _buffer.putInt(8, slots);
+        _buffer.putInt(12, capacity);
+        for (int slot = 0; slot < slots; slot++) {
+            _buffer.putLong(getSlotOffset(slot), -1);
+        }
+    }
+
+    public String getPath() {
+        return _file.getAbsolutePath();
+    }
+
+    public int getSlots() {
+        return _slots;
+    }
+
+    public int getCapacity() {
+        return _capacity;
+    }
+
+    public int getSlotOffset(int slot) {
+        return HEADER_SIZE + slot * (SLOT_HEADER_SIZE + _capacity);
+    }
+
+    /**
+     * Write `length` bytes of `data` into the next slot and return its index, or -1 if the frame
+     * is larger than a slot.
+     */
+    public synchronized int write(byte[] data, int length, RCTFrameDescriptor descriptor, int width, int height, int format) {
+        if (length > _capacity) {
+            return -1;
+        }
+
+        int slot = (int) (_sequence % _slots);
+        int offset = getSlotOffset(slot);
+        _buffer.putLong(offset, -1);
+        fence();
+        _buffer.putLong(offset + 8, descriptor.timestamp);
+        _buffer.putInt(offset + 16, width);
+        _buffer.putInt(offset + 20, height);
+        _buffer.putInt(offset + 24, format);
+        _buffer.putInt(offset + 28, descriptor.rotation);
+        _buffer.putInt(offset + 32, length);
+        _buffer.position(offset + SLOT_HEADER_SIZE);
+        _buffer.put(data, 0, length);
+        // published last, see the class comment
+        fence();
+        _buffer.putLong(offset, _sequence);
+        _sequence++;
+        return slot;
+    }
+
+    public synchronized long getLastSequence() {
+        return _sequence - 1;
+    }
+
+    /**
+     * Keep the stores to the mapping before and after the call in order: a volatile write followed
+     * by a volatile read make a full fence, which neither the compiler nor the CPU reorders plain
+     * stores across.
+     */
+    private int fence() {
+        _fence = 1;
+        return _fence;
+    }
+}
@@ -0,0 +1,200 @@
+package com.lwansbrough.RCTCamera;
+
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs preview frame analysis on dedicated worker threads.
+ *
+ * Each consumer (barcode reader, preview mode, heart rate...) gets its own lane holding at most
+ * one running and one pending frame. A frame submitted while another one is pending replaces it
+ * ("latest frame wins"), so a slow consumer only ever lags a single frame behind the camera.
+ *
+ * Consumers that can analyse several frames at once may get more running frames per lane, see
+ * `setConcurrency`. A lane gives its worker back after every frame and queues again behind the
+ * other lanes, so lanes take turns even when more of them are busy than there are workers.
+ */
+class RCTFrameScheduler {
+    private static final String TAG = "RCTFrameScheduler";
+    private static final int MIN_WORKERS = 3;
+
+    /**
+     * Unit of work for a single preview frame.
+     */
+    public interface FrameTask {
+        /**
+         * Analyse the frame. Called on a worker thread.
+         */
+        void run();
+
+        /**
+         * Called instead of `run` when the frame is superseded by a newer one or the scheduler
+         * is shut down, so the task can release what it holds.
+         */
+        void drop();
+    }
+
+    private final ExecutorService _executor;
+    private final Map<String, Lane> _lanes = new HashMap<>();
+    private boolean _isShutdown = false;
+
+    public RCTFrameScheduler() {
+        this(getWorkerCount(1));
+    }
+
+    public RCTFrameScheduler(int workers) {
+        _executor = Executors.newFixedThreadPool(workers, new WorkerThreadFactory());
+    }
+
+    /**
+     * Enough workers for `concurrency` frames of a single lane to run next to the other lanes,
+     * within the number of cores.
+     */
+    public static int getWorkerCount(int concurrency) {
+        return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), Math.max(MIN_WORKERS, concurrency + 2)));
+    }
+
+    /**
+     * Let up to `concurrency` frames of the lane of `consumer` run at once.
+     */
+    public synchronized void setConcurrency(String consumer, int concurrency) {
+        getLane(consumer).concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Queue `task` on the lane of `consumer`, dropping whatever frame was still pending there.
+     */
+    public void submit(String consumer, FrameTask task) {
+        FrameTask dropped = null;
+        boolean schedule = false;
+        Lane lane;
+
+        synchronized (this) {
+            if (_isShutdown) {
+                dropped = task;
+                lane = null;
+            } else {
+                lane = getLane(consumer);
+                dropped = lane.pending;
+                lane.pending = task;
+                if (lane.running < lane.concurrency) {
+                    lane.running++;
+                    schedule = true;
+                }
+            }
+        }
+
+        if (dropped != null) {
+            dropped.drop();
+        }
+        if (schedule) {
+            _executor.execute(lane);
+        }
+    }
+
+    /**
+     * Drop every pending frame and stop the workers once the frames being analysed are done.
+     */
+    public void shutdown() {
+        List<FrameTask> dropped = new ArrayList<>();
+        synchronized (this) {
+            if (_isShutdown) {
+                return;
+            }
+            _isShutdown = true;
+            for (Lane lane : _lanes.values()) {
+                if (lane.pending != null) {
+                    dropped.add(lane.pending);
+                    lane.pending = null;
+                }
+            }
+        }
+
+        for (FrameTask task : dropped) {
+            task.drop();
+        }
+        _executor.shutdown();
+    }
+
+    private Lane getLane(String consumer) {
+        Lane lane = _lanes.get(consumer);
+        if (lane == null) {
+            lane = new Lane();
+            _lanes.put(consumer, lane);
+        }
+        return lane;
+    }
+
+    private class Lane implements Runnable {
+        // guarded by RCTFrameScheduler.this
+        FrameTask pending;
+        // workers currently running this lane
+        int running;
+        int concurrency = 1;
+
+        /**
+         * Run a single frame, then queue the lane again behind the other lanes if another frame
+         * is pending, so a lane slower than the camera never keeps a worker to itself.
+         */
+        @Override
+        public void run() {
+            FrameTask task;
+            synchronized (RCTFrameScheduler.this) {
+                task = pending;
+                pending = null;
+                if (task == null) {
+                    running--;
+                    return;
+                }
+            }
+
+            try {
+                task.run();
+            } catch (Throwable t) {
+                Log.e(TAG, "frame task failed", t);
+            }
+
+            synchronized (RCTFrameScheduler.this) {
+                if (pending == null || _isShutdown) {
+                    running--;
+                    return;
+                }
+            }
+            try {
+                _executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                // shut down meanwhile, which dropped the pending frame
+                synchronized (RCTFrameScheduler.this) {
+                    running--;
+                }
+            }
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger _count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "RCTCameraFrameWorker-" + _count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.lwansbrough.RCTCamera;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP server on the loopback interface serving the latest preview frame as JPEG, so that image
+ * components can show the preview at their own pace.
+ *
+ *   GET /<token>/frame.jpg     the latest frame
+ *   GET /<token>/stream.mjpeg  a multipart/x-mixed-replace stream of frames, each frame being
+ *                              sent once the client is done with the previous one
+ *
+ * Any app of the device can connect to the loopback interface, so paths carry a random token
+ * generated when the server starts, only handed out within `getFrameUrl` and `getStreamUrl`.
+ * Anything else is answered 404.
+ *
+ * At most `MAX_CLIENTS` clients are served at once, others are disconnected. A client has
+ * `REQUEST_TIMEOUT` to send a request of at most `MAX_REQUEST_SIZE` bytes, headers included, and
+ * is only counted as connected once it asked for frames.
+ *
+ * Frames are fed by `RCTFrameServerProcessor`, which only encodes while a client is connected.
+ */
+class RCTFrameServer {
+    private static final String TAG = "RCTFrameServer";
+    private static final String BOUNDARY = "RCTCameraFrame";
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    // how long a client waits for a frame before giving up
+    private static final long FRAME_TIMEOUT = 5000;
+    // how long a client has to send its request
+    private static final int REQUEST_TIMEOUT = 5000;
+    // request line and headers, a GET of this server needs a fraction of it
+    private static final int MAX_REQUEST_SIZE = 8192;
+    private static final int MAX_CLIENTS = 4;
+
+    private static volatile RCTFrameServer ourInstance;
+
+    private final ServerSocket _serverSocket;
+    private final String _token;
+    private final ThreadPoolExecutor _clientExecutor;
+    // clients waiting for frames
+    private final AtomicInteger _clients = new AtomicInteger();
+    private final Object _frameLock = new Object();
+    private byte[] _frame;
+    private long _frameSequence = 0;
+    private volatile boolean _running = true;
+
+    /**
+     * The running server, null if none.
+     */
+    public static RCTFrameServer getInstance() {
+        return ourInstance;
+    }
+
+    /**
+     * Start the server on `port`, 0 for any free port, or return the running one.
+     */
+    public static synchronized RCTFrameServer start(int port) throws IOException {
+        if (ourInstance == null) {
+            ourInstance = new RCTFrameServer(port);
+        }
+        return ourInstance;
+    }
+
+    public static synchronized void stop() {
+        if (ourInstance != null) {
+            ourInstance.close();
+            ourInstance = null;
+        }
+    }
+
+    private RCTFrameServer(int port) throws IOException {
+        byte[] token = new byte[16];
+        new SecureRandom().nextBytes(token);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : token) {
+            hex.append(String.format("%02x", b & 0xff));
+        }
+        _token = hex.toString();
+        // no queue: a client beyond MAX_CLIENTS is rejected rather than left waiting
+        _clientExecutor = new ThreadPoolExecutor(0, MAX_CLIENTS, 30, TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
+
+        _serverSocket = new ServerSocket(port, 8, InetAddress.getByName("127.0.0.1"));
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "RCTFrameServer");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return _serverSocket.getLocalPort();
+    }
+
+    public String getFrameUrl() {
+        return "http://127.0.0.1:" + getPort() + "/" + _token + "/frame.jpg";
+    }
+
+    public String getStreamUrl() {
+        return "http://127.0.0.1:" + getPort() + "/" + _token + "/stream.mjpeg";
+    }
+
+    /**
+     * Whether a client is connected, i.e. frames are worth encoding.
+     */
+    public boolean hasClients() {
+        return _clients.get() > 0;
+    }
+
+    /**
+     * Publish the first `length` bytes of `jpeg` as the latest frame.
+     */
+    public void publish(byte[] jpeg, int length) {
+        if (!hasClients()) {
+            // a new client waits for the next frame anyway
+            return;
+        }
+        byte[] frame = Arrays.copyOf(jpeg, length);
+        synchronized (_frameLock) {
+            _frame = frame;
+            _frameSequence++;
+            _frameLock.notifyAll();
+        }
+    }
+
+    private void close() {
+        _running = false;
+        try {
+            _serverSocket.close();
+        } catch (IOException e) {
+            // meh
+        }
+        synchronized (_frameLock) {
+            _frameLock.notifyAll();
+        }
+        _clientExecutor.shutdown();
+    }
+
+    private void accept() {
+        while (_running) {
+            try {
+                final Socket socket = _serverSocket.accept();
+                try {
+                    _clientExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            serve(socket);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    closeQuietly(socket);
+                }
+            } catch (IOException e) {
+                if (_running) {
+                    Log.e(TAG, "Could not accept a client", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        boolean counted = false;
+        try {
+            // only bounds reading the request, frames are written without a timeout
+            socket.setSoTimeout(REQUEST_TIMEOUT);
+            String request = readRequest(new BufferedInputStream(socket.getInputStream()));
+
+            OutputStream out = socket.getOutputStream();
+            if (request == null) {
+                writeStatus(out, "400 Bad Request");
+                return;
+            }
+            String[] parts = request.split(" ");
+            String path = parts.length >= 2 && "GET".equals(parts[0]) ? parts[1] : "";
+            // e.g. a cache busting query
+            if (path.indexOf('?') >= 0) {
+                path = path.substring(0, path.indexOf('?'));
+            }
+            path = stripToken(path);
+            if ("/frame.jpg".equals(path) || "/stream.mjpeg".equals(path)) {
+                _clients.incrementAndGet();
+                counted = true;
+            }
+            if ("/frame.jpg".equals(path)) {
+                byte[] frame;
+                synchronized (_frameLock) {
+                    // a fresh frame rather than the one left from the last client
+                    frame = nextFrame(_frameSequence);
+                }
+                if (frame == null) {
+                    writeStatus(out, "503 Service Unavailable");
+                    return;
+                }
+                out.write(("HTTP/1.0 200 OK\r\nContent-Type: image/jpeg\r\nContent-Length: " + frame.length
+                        + "\r\nCache-Control: no-cache\r\nConnection: close\r\n\r\n").getBytes(ASCII));
+                out.write(frame);
+                out.flush();
+            } else if ("/stream.mjpeg".equals(path)) {
+                out.write(("HTTP/1.0 200 OK\r\nContent-Type: multipart/x-mixed-replace; boundary=" + BOUNDARY
+                        + "\r\nCache-Control: no-cache\r\nConnection: close\r\n\r\n").getBytes(ASCII));
+                long sequence;
+                synchronized (_frameLock) {
+                    sequence = _frameSequence;
+                }
+                while (_running) {
+                    byte[] frame;
+                    synchronized (_frameLock) {
+                        frame = nextFrame(sequence);
+                        sequence = _frameSequence;
+                    }
+                    if (frame == null) {
+                        break;
+                    }
+                    out.write(("--" + BOUNDARY + "\r\nContent-Type: image/jpeg\r\nContent-Length: " + frame.length + "\r\n\r\n").getBytes(ASCII));
+                    out.write(frame);
+                    out.write("\r\n".getBytes(ASCII));
+                    out.flush();
+                }
+            } else {
+                writeStatus(out, "404 Not Found");
+            }
+        } catch (IOException e) {
+            // the client went away, or never sent its request
+        } finally {
+            if (counted) {
+                _clients.decrementAndGet();
+            }
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Read the request line and skip the headers. Returns null if they take more than
+     * `MAX_REQUEST_SIZE` bytes or `REQUEST_TIMEOUT`, or the client closed the connection first.
+     */
+    private static String readRequest(InputStream in) throws IOException {
+        long deadline = System.currentTimeMillis() + REQUEST_TIMEOUT;
+        StringBuilder line = new StringBuilder();
+        String request = null;
+        for (int size = 0; size < MAX_REQUEST_SIZE; size++) {
+            if (System.currentTimeMillis() > deadline) {
+                return null;
+            }
+            int c = in.read();
+            if (c < 0) {
+                return null;
+            }
+            if (c == '\r') {
+                continue;
+            }
+            if (c != '\n') {
+                line.append((char) c);
+                continue;
+            }
+            if (request == null) {
+                request = line.toString();
+            } else if (line.length() == 0) {
+                // end of the headers
+                return request;
+            }
+            line.setLength(0);
+        }
+        return null;
+    }
+
+    /**
+     * `path` without its leading token, null if it doesn't start with the token.
+     */
+    private String stripToken(String path) {
+        int end = path.indexOf('/', 1);
+        if (!path.startsWith("/") || end < 0) {
+            return null;
+        }
+        byte[] token = path.substring(1, end).getBytes(ASCII);
+        // constant time, not to leak the token through timing
+        if (!MessageDigest.isEqual(token, _token.getBytes(ASCII))) {
+            return null;
+        }
+        return path.substring(end);
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // meh
+        }
+    }
+
+    /**
+     * Wait for a frame newer than `sequence`. Returns null on timeout or once the server is
+     * stopped.
+     */
+    private byte[] nextFrame(long sequence) {
+        long deadline = System.currentTimeMillis() + FRAME_TIMEOUT;
+        synchronized (_frameLock) {
+            while (_running && _frameSequence == sequence) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) {
+                    return null;
+                }
+                try {
+                    _frameLock.wait(wait);
+                } catch (InterruptedException e) {
+                    return null;
+                }
+            }
+            return _running ? _frame : null;
+        }
+    }
+
+    private static void writeStatus(OutputStream out, String status) throws IOException {
+        out.write(("HTTP/1.0 " + status + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n").getBytes(ASCII));
+        out.flush();
+    }
+}
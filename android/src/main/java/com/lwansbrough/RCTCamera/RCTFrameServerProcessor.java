@@ -0,0 +1,40 @@
+package com.lwansbrough.RCTCamera;
+
+/**
+ * Feeds `RCTFrameServer` with JPEG frames, downscaled like preview mode frames, while it has
+ * clients.
+ */
+class RCTFrameServerProcessor implements RCTFrameProcessor {
+    public static final String NAME = "frameServer";
+
+    private final RCTFrameProcessorHost _host;
+    private final RCTPreviewFrameEncoder _encoder = new RCTPreviewFrameEncoder();
+
+    public RCTFrameServerProcessor(RCTFrameProcessorHost host) {
+        _host = host;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        RCTFrameServer server = RCTFrameServer.getInstance();
+        return server != null && server.hasClients();
+    }
+
+    @Override
+    public void process(RCTPreviewFrame frame) {
+        RCTFrameServer server = RCTFrameServer.getInstance();
+        if (server == null) {
+            return;
+        }
+        RCTPreviewFrameOptions options = _host.getPreviewFrameOptions();
+        _encoder.encode(frame, new RCTPreviewFrameOptions(options.width, RCTPreviewFrameOptions.FORMAT_JPEG, options.quality, 0, 0, 0));
+        if (RCTPreviewFrameOptions.FORMAT_JPEG.equals(_encoder.getFormat())) {
+            server.publish(_encoder.getData(), _encoder.getLength());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.lwansbrough.RCTCamera;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and latency histograms of the preview frame pipeline.
+ *
+ * Exposed through `RCTCameraModule.getFrameStats` and the periodic `CameraStats` event. All
+ * latencies are reported in milliseconds.
+ */
+class RCTFrameStats {
+    private final AtomicLong _frames = new AtomicLong();
+    private final long _startTime = System.nanoTime();
+    private final ConcurrentHashMap<String, ProcessorStats> _processors = new ConcurrentHashMap<>();
+    // from `Camera.open` being called to it returning
+    public final RCTLatencyHistogram cameraOpen = new RCTLatencyHistogram();
+    // from the preview being requested to its first frame
+    public final RCTLatencyHistogram timeToFirstFrame = new RCTLatencyHistogram();
+    // from a switch to the other camera being requested to the first frame of that camera
+    public final RCTLatencyHistogram cameraSwitch = new RCTLatencyHistogram();
+
+    /**
+     * Count a frame delivered by the camera, whether or not any processor takes it.
+     */
+    public void recordFrame() {
+        _frames.incrementAndGet();
+    }
+
+    public ProcessorStats getProcessorStats(String name) {
+        ProcessorStats stats = _processors.get(name);
+        if (stats == null) {
+            stats = new ProcessorStats();
+            ProcessorStats previous = _processors.putIfAbsent(name, stats);
+            if (previous != null) {
+                stats = previous;
+            }
+        }
+        return stats;
+    }
+
+    public WritableMap toWritableMap() {
+        WritableMap map = Arguments.createMap();
+        map.putDouble("frames", _frames.get());
+        map.putDouble("uptime", (System.nanoTime() - _startTime) / 1000000.0);
+
+        WritableMap processors = Arguments.createMap();
+        for (Map.Entry<String, ProcessorStats> entry : _processors.entrySet()) {
+            processors.putMap(entry.getKey(), entry.getValue().toWritableMap());
+        }
+        map.putMap("processors", processors);
+
+        WritableMap camera = Arguments.createMap();
+        camera.putMap("open", cameraOpen.toWritableMap());
+        camera.putMap("timeToFirstFrame", timeToFirstFrame.toWritableMap());
+        camera.putMap("switch", cameraSwitch.toWritableMap());
+        map.putMap("camera", camera);
+        return map;
+    }
+
+    /**
+     * Statistics of a single frame processor.
+     */
+    public static class ProcessorStats {
+        // frames handed to the processor
+        public final AtomicLong delivered = new AtomicLong();
+        // frames skipped to keep the processor at its target rate
+        public final AtomicLong throttled = new AtomicLong();
+        // frames superseded by a newer frame, or pending when the camera stopped
+        public final AtomicLong dropped = new AtomicLong();
+        // frames the processor actually ran on
+        public final AtomicLong processed = new AtomicLong();
+        // processor failures
+        public final AtomicLong failed = new AtomicLong();
+        public final RCTLatencyHistogram queueWait = new RCTLatencyHistogram();
+        public final RCTLatencyHistogram processingTime = new RCTLatencyHistogram();
+        private final ConcurrentHashMap<String, AtomicLong> _counters = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, Outcomes> _outcomes = new ConcurrentHashMap<>();
+
+        /**
+         * Increment a processor specific counter.
+         */
+        public void increment(String counter) {
+            AtomicLong value = _counters.get(counter);
+            if (value == null) {
+                value = new AtomicLong();
+                AtomicLong previous = _counters.putIfAbsent(counter, value);
+                if (previous != null) {
+                    value = previous;
+                }
+            }
+            value.incrementAndGet();
+        }
+
+        /**
+         * Record an attempt of a processor specific path, reported with its success rate.
+         */
+        public void recordAttempt(String path, boolean success) {
+            Outcomes outcomes = _outcomes.get(path);
+            if (outcomes == null) {
+                outcomes = new Outcomes();
+                Outcomes previous = _outcomes.putIfAbsent(path, outcomes);
+                if (previous != null) {
+                    outcomes = previous;
+                }
+            }
+            outcomes.attempts.incrementAndGet();
+            if (success) {
+                outcomes.successes.incrementAndGet();
+            }
+        }
+
+        public WritableMap toWritableMap() {
+            WritableMap map = Arguments.createMap();
+            map.putDouble("delivered", delivered.get());
+            map.putDouble("throttled", throttled.get());
+            map.putDouble("dropped", dropped.get());
+            map.putDouble("processed", processed.get());
+            map.putDouble("failed", failed.get());
+            map.putMap("queueWait", queueWait.toWritableMap());
+            map.putMap("processingTime", processingTime.toWritableMap());
+            for (Map.Entry<String, AtomicLong> entry : _counters.entrySet()) {
+                map.putDouble(entry.getKey(), entry.getValue().get());
+            }
+            for (Map.Entry<String, Outcomes> entry : _outcomes.entrySet()) {
+                map.putMap(entry.getKey(), entry.getValue().toWritableMap());
+            }
+            return map;
+        }
+    }
+
+    private static class Outcomes {
+        final AtomicLong attempts = new AtomicLong();
+        final AtomicLong successes = new AtomicLong();
+
+        WritableMap toWritableMap() {
+            long attempts = this.attempts.get();
+            long successes = this.successes.get();
+            WritableMap map = Arguments.createMap();
+            map.putDouble("attempts", attempts);
+            map.putDouble("successes", successes);
+            map.putDouble("successRate", attempts == 0 ? 0 : (double) successes / attempts);
+            return map;
+        }
+    }
+}
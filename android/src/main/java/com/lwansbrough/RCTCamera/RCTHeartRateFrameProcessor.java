@@ -0,0 +1,46 @@
+package com.lwansbrough.RCTCamera;
+
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * Samples the preview luma for the heart rate mode.
+ */
+class RCTHeartRateFrameProcessor implements RCTFrameProcessor {
+    public static final String NAME = "heartRate";
+
+    private final RCTFrameProcessorHost _host;
+
+    public RCTHeartRateFrameProcessor(RCTFrameProcessorHost host) {
+        _host = host;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return RCTCamera.getInstance().isHeartRateModeEnabled();
+    }
+
+    @Override
+    public void process(RCTPreviewFrame frame) {
+        // read straight from the luma plane, no per-frame copy of it
+        byte[] data = frame.getData();
+        WritableMap event = _host.createMap();
+        event.putInt("hue", getLuma(data, 0));
+        event.putInt("saturation", getLuma(data, 1));
+        event.putInt("brightness", getLuma(data, 2));
+        frame.release();
+
+        _host.emit("PreviewFrameReadAndroid", event);
+    }
+
+    /**
+     * Luma of the pixel at `index` of a YUV420SP image, from 0 (the video black level, 16) up.
+     */
+    private static int getLuma(byte[] yuv420sp, int index) {
+        return Math.max(0, (yuv420sp[index] & 0xff) - 16);
+    }
+}
@@ -0,0 +1,71 @@
+package com.lwansbrough.RCTCamera;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with power of two buckets in microseconds.
+ *
+ * Recording is a couple of atomic increments so it can sit on the frame hot path; percentiles
+ * are reported as the upper bound of their bucket.
+ */
+class RCTLatencyHistogram {
+    // bucket i holds samples in [2^(i-1), 2^i) microseconds, the last one everything above
+    private static final int BUCKET_COUNT = 26;
+
+    private final AtomicLongArray _buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong _count = new AtomicLong();
+    private final AtomicLong _totalMicros = new AtomicLong();
+    private final AtomicLong _maxMicros = new AtomicLong();
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+        _buckets.incrementAndGet(bucket);
+        _count.incrementAndGet();
+        _totalMicros.addAndGet(micros);
+
+        long max = _maxMicros.get();
+        while (micros > max && !_maxMicros.compareAndSet(max, micros)) {
+            max = _maxMicros.get();
+        }
+    }
+
+    public long getCount() {
+        return _count.get();
+    }
+
+    /**
+     * Approximate percentile in microseconds, `percentile` in [0, 1].
+     */
+    public long getPercentileMicros(double percentile) {
+        long count = _count.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += _buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(1L << i, _maxMicros.get());
+            }
+        }
+        return _maxMicros.get();
+    }
+
+    public WritableMap toWritableMap() {
+        long count = _count.get();
+        WritableMap map = Arguments.createMap();
+        map.putDouble("count", count);
+        map.putDouble("mean", count == 0 ? 0 : _totalMicros.get() / (double) count / 1000);
+        map.putDouble("p50", getPercentileMicros(0.5) / 1000.0);
+        map.putDouble("p90", getPercentileMicros(0.9) / 1000.0);
+        map.putDouble("p99", getPercentileMicros(0.99) / 1000.0);
+        map.putDouble("max", _maxMicros.get() / 1000.0);
+        return map;
+    }
+}
@@ -0,0 +1,107 @@
+package com.lwansbrough.RCTCamera;
+
+import java.util.Arrays;
+
+/**
+ * Helpers working on the luma (Y) plane of preview frames.
+ */
+final class RCTLumaUtils {
+    // tiles of 32x32 bytes keep both the rows read and the columns written within a few cache lines
+    private static final int TILE_SIZE = 32;
+
+    private RCTLumaUtils() {
+    }
+
+    /**
+     * Rotate the `width` x `height` region at (`left`, `top`) of a luma plane `dataWidth` bytes
+     * wide by 90 degrees clockwise into `rotated`, which ends up `height` bytes wide and `width`
+     * rows high.
+     *
+     * Works in square tiles rather than a column at a time, so the scattered writes of a rotation
+     * stay cache friendly.
+     */
+    public static void rotateClockwise(byte[] data, int dataWidth, int left, int top, int width, int height, byte[] rotated) {
+        for (int tileY = 0; tileY < height; tileY += TILE_SIZE) {
+            int tileBottom = Math.min(tileY + TILE_SIZE, height);
+            for (int tileX = 0; tileX < width; tileX += TILE_SIZE) {
+                int tileRight = Math.min(tileX + TILE_SIZE, width);
+                for (int y = tileY; y < tileBottom; y++) {
+                    int src = (top + y) * dataWidth + left + tileX;
+                    int dst = tileX * height + height - y - 1;
+                    for (int x = tileX; x < tileRight; x++) {
+                        rotated[dst] = data[src++];
+                        dst += height;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Downsample the `width` x `height` region at (`left`, `top`) of a luma plane `dataWidth`
+     * bytes wide to half its size into `halved`, averaging blocks of 2x2 pixels. `halved` ends up
+     * `width / 2` bytes wide and `height / 2` rows high.
+     */
+    public static void halve(byte[] data, int dataWidth, int left, int top, int width, int height, byte[] halved) {
+        int halvedWidth = width / 2;
+        int halvedHeight = height / 2;
+        int dst = 0;
+        for (int y = 0; y < halvedHeight; y++) {
+            int src = (top + y * 2) * dataWidth + left;
+            int nextRow = src + dataWidth;
+            for (int x = 0; x < halvedWidth; x++) {
+                int sum = (data[src] & 0xff) + (data[src + 1] & 0xff) + (data[nextRow] & 0xff) + (data[nextRow + 1] & 0xff);
+                halved[dst++] = (byte) (sum >> 2);
+                src += 2;
+                nextRow += 2;
+            }
+        }
+    }
+
+    /**
+     * Scale a `dataWidth` x `dataHeight` luma plane to `width` x `height` into `scaled`, picking
+     * the nearest pixel.
+     */
+    public static void scale(byte[] data, int dataWidth, int dataHeight, int width, int height, byte[] scaled) {
+        int dst = 0;
+        for (int y = 0; y < height; y++) {
+            int row = (y * dataHeight / height) * dataWidth;
+            for (int x = 0; x < width; x++) {
+                scaled[dst++] = data[row + x * dataWidth / width];
+            }
+        }
+    }
+
+    /**
+     * Count the luma values of the `width` x `height` region at (`left`, `top`) of a luma plane
+     * `dataWidth` bytes wide into the 256 bins of `histogram`, sampling every `step` rows and
+     * columns. Returns the number of samples.
+     */
+    public static int histogram(byte[] data, int dataWidth, int left, int top, int width, int height, int step, int[] histogram) {
+        Arrays.fill(histogram, 0);
+        int count = 0;
+        for (int y = 0; y < height; y += step) {
+            int row = (top + y) * dataWidth + left;
+            for (int x = 0; x < width; x += step) {
+                histogram[data[row + x] & 0xff]++;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The luma value below which `fraction` of the `count` samples of `histogram` fall.
+     */
+    public static int percentile(int[] histogram, int count, float fraction) {
+        int target = (int) (count * fraction);
+        int sum = 0;
+        for (int value = 0; value < histogram.length; value++) {
+            sum += histogram[value];
+            if (sum > target) {
+                return value;
+            }
+        }
+        return histogram.length - 1;
+    }
+}
@@ -0,0 +1,80 @@
+package com.lwansbrough.RCTCamera;
+
+/**
+ * Tells whether a frame changed enough since the last accepted one to be worth exporting.
+ *
+ * The luma plane is sampled every `GRID_STEP` pixels, and the samples are compared with those of
+ * the last accepted frame in blocks of `BLOCK_SIZE` x `BLOCK_SIZE` samples: a frame is accepted
+ * when the mean absolute difference of any block reaches the threshold, so that a small moving
+ * object isn't averaged away by a static background.
+ */
+class RCTMotionGate {
+    // pixels between the samples of the grid, in both directions
+    private static final int GRID_STEP = 8;
+    // samples per side of a block
+    private static final int BLOCK_SIZE = 8;
+
+    // samples of the last accepted frame, and of the frame being checked
+    private byte[] _reference;
+    private byte[] _samples;
+    private int _columns;
+    private int _rows;
+    private long _referenceTime;
+
+    /**
+     * Whether the `width` x `height` luma plane of `data`, received at `timestamp` (ns), should be
+     * accepted: it differs from the last accepted frame by at least `threshold` (mean absolute luma
+     * difference of a block, 0 to 255), or `keyframeInterval` ms passed since then (0 for never).
+     * Accepted frames become the reference of the next ones.
+     */
+    public boolean accept(byte[] data, int width, int height, long timestamp, float threshold, long keyframeInterval) {
+        int columns = (width + GRID_STEP - 1) / GRID_STEP;
+        int rows = (height + GRID_STEP - 1) / GRID_STEP;
+        if (_samples == null || columns != _columns || rows != _rows) {
+            _samples = new byte[columns * rows];
+            _reference = null;
+            _columns = columns;
+            _rows = rows;
+        }
+        int i = 0;
+        for (int y = 0; y < height; y += GRID_STEP) {
+            int row = y * width;
+            for (int x = 0; x < width; x += GRID_STEP) {
+                _samples[i++] = data[row + x];
+            }
+        }
+
+        boolean accepted = _reference == null
+                || (keyframeInterval > 0 && timestamp - _referenceTime >= keyframeInterval * 1000000)
+                || getMaxBlockDifference() >= threshold;
+        if (accepted) {
+            byte[] reference = _reference == null ? new byte[_samples.length] : _reference;
+            _reference = _samples;
+            _samples = reference;
+            _referenceTime = timestamp;
+        }
+        return accepted;
+    }
+
+    /**
+     * The largest mean absolute difference between the samples of a block and the reference.
+     */
+    private float getMaxBlockDifference() {
+        float max = 0;
+        for (int blockY = 0; blockY < _rows; blockY += BLOCK_SIZE) {
+            int blockBottom = Math.min(blockY + BLOCK_SIZE, _rows);
+            for (int blockX = 0; blockX < _columns; blockX += BLOCK_SIZE) {
+                int blockRight = Math.min(blockX + BLOCK_SIZE, _columns);
+                int sum = 0;
+                for (int y = blockY; y < blockBottom; y++) {
+                    int i = y * _columns + blockX;
+                    for (int x = blockX; x < blockRight; x++, i++) {
+                        sum += Math.abs((_samples[i] & 0xff) - (_reference[i] & 0xff));
+                    }
+                }
+                max = Math.max(max, (float) sum / ((blockBottom - blockY) * (blockRight - blockX)));
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,204 @@
+package com.lwansbrough.RCTCamera;
+
+import android.graphics.ImageFormat;
+import android.hardware.Camera;
+import android.os.AsyncTask;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pool of preview buffers handed to the camera through {@link Camera#addCallbackBuffer(byte[])}.
+ *
+ * Every buffer delivered to `onPreviewFrame` is retained once per consumer it is dispatched to
+ * and only given back to the camera when the last of them releases it, so preview frames never
+ * allocate while the pool is open.
+ *
+ * Buffers the pool still owns when it is closed are kept as spares for the next pool, e.g. when
+ * switching cameras, see `preallocate`. Spares are kept per buffer size, for the size of the
+ * closed pool and the size last preallocated, so a closing pool never evicts the spares allocated
+ * for the next one.
+ */
+class RCTPreviewBufferPool {
+    public static final int DEFAULT_BUFFER_COUNT = 3;
+
+    private final Camera _camera;
+    private final int _bufferSize;
+    private final List<byte[]> _buffers = new ArrayList<>();
+    private final IdentityHashMap<byte[], Integer> _references = new IdentityHashMap<>();
+    private boolean _closed = false;
+
+    // buffers of closed pools by buffer size, guarded by the class
+    private static final Map<Integer, List<byte[]>> ourSpares = new HashMap<>();
+    // size of the spares allocated for the next pool, 0 if none, guarded by the class
+    private static int ourPreallocatedSize = 0;
+    // spares kept of each size, the buffer count of the largest pool so far, guarded by the class
+    private static int ourSpareCount = DEFAULT_BUFFER_COUNT;
+
+    /**
+     * Allocate `bufferCount` buffers sized for the preview size and format negotiated in
+     * `parameters` and queue them on `camera`.
+     */
+    public RCTPreviewBufferPool(Camera camera, Camera.Parameters parameters, int bufferCount) {
+        _camera = camera;
+        _bufferSize = getBufferSize(parameters);
+        synchronized (RCTPreviewBufferPool.class) {
+            ourSpareCount = Math.max(ourSpareCount, bufferCount);
+        }
+        for (int i = 0; i < bufferCount; i++) {
+            byte[] buffer = takeSpare(_bufferSize);
+            _buffers.add(buffer);
+            _camera.addCallbackBuffer(buffer);
+        }
+    }
+
+    /**
+     * Allocate spares of `bufferSize` bytes in the background, for a pool about to be created
+     * (e.g. while the previous camera is being released).
+     */
+    public static void preallocate(final int bufferSize, final int bufferCount) {
+        synchronized (RCTPreviewBufferPool.class) {
+            ourPreallocatedSize = bufferSize;
+            ourSpareCount = Math.max(ourSpareCount, bufferCount);
+        }
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < bufferCount; i++) {
+                    synchronized (RCTPreviewBufferPool.class) {
+                        List<byte[]> spares = ourSpares.get(bufferSize);
+                        if (ourPreallocatedSize != bufferSize || (spares != null && spares.size() >= bufferCount)) {
+                            return;
+                        }
+                    }
+                    addSpare(new byte[bufferSize]);
+                }
+            }
+        });
+    }
+
+    /**
+     * Let go of the spares, for when no preview is about to start.
+     */
+    public static synchronized void clearSpares() {
+        ourSpares.clear();
+        ourPreallocatedSize = 0;
+    }
+
+    private static synchronized byte[] takeSpare(int bufferSize) {
+        List<byte[]> spares = ourSpares.get(bufferSize);
+        if (spares == null || spares.isEmpty()) {
+            return new byte[bufferSize];
+        }
+        if (bufferSize == ourPreallocatedSize && spares.size() == 1) {
+            // the next pool took what was allocated for it
+            ourPreallocatedSize = 0;
+        }
+        return spares.remove(spares.size() - 1);
+    }
+
+    private static synchronized void addSpare(byte[] buffer) {
+        // drop the spares nobody is expected to use anymore
+        Iterator<Integer> sizes = ourSpares.keySet().iterator();
+        while (sizes.hasNext()) {
+            int size = sizes.next();
+            if (size != buffer.length && size != ourPreallocatedSize) {
+                sizes.remove();
+            }
+        }
+        List<byte[]> spares = ourSpares.get(buffer.length);
+        if (spares == null) {
+            spares = new ArrayList<>();
+            ourSpares.put(buffer.length, spares);
+        }
+        if (spares.size() < ourSpareCount) {
+            spares.add(buffer);
+        }
+    }
+
+    /**
+     * Size in bytes of a single preview frame for the given camera parameters.
+     *
+     * See {Camera.Parameters#setPreviewFormat} for the YV12 stride requirements.
+     */
+    public static int getBufferSize(Camera.Parameters parameters) {
+        Camera.Size size = parameters.getPreviewSize();
+        return getBufferSize(size.width, size.height, parameters.getPreviewFormat());
+    }
+
+    /**
+     * Size in bytes of a single preview frame of the given size and {ImageFormat}.
+     */
+    public static int getBufferSize(int width, int height, int format) {
+        if (format == ImageFormat.YV12) {
+            int yStride = (int) Math.ceil(width / 16.0) * 16;
+            int uvStride = (int) Math.ceil((yStride / 2) / 16.0) * 16;
+            return yStride * height + uvStride * height;
+        }
+        if (format == ImageFormat.NV21) {
+            // the default preview format, also sized without the framework for replays
+            return width * height * 3 / 2;
+        }
+        return width * height * ImageFormat.getBitsPerPixel(format) / 8;
+    }
+
+    public int getBufferSize() {
+        return _bufferSize;
+    }
+
+    /**
+     * Mark `buffer` as in use by `consumers` consumers. A buffer nobody consumes goes straight
+     * back to the camera.
+     */
+    public synchronized void retain(byte[] buffer, int consumers) {
+        if (consumers <= 0) {
+            recycle(buffer);
+            return;
+        }
+        _references.put(buffer, consumers);
+    }
+
+    /**
+     * Called by a consumer once it no longer reads from `buffer`.
+     */
+    public synchronized void release(byte[] buffer) {
+        Integer references = _references.get(buffer);
+        if (references == null) {
+            return;
+        }
+        if (references > 1) {
+            _references.put(buffer, references - 1);
+        } else {
+            _references.remove(buffer);
+            recycle(buffer);
+        }
+    }
+
+    /**
+     * Stop handing buffers back to the camera, once it no longer fills them. Buffers become spares
+     * as soon as no consumer holds them anymore.
+     */
+    public synchronized void close() {
+        _closed = true;
+        for (byte[] buffer : _buffers) {
+            if (!_references.containsKey(buffer)) {
+                addSpare(buffer);
+            }
+        }
+    }
+
+    private void recycle(byte[] buffer) {
+        if (buffer.length != _bufferSize) {
+            return;
+        }
+        if (_closed) {
+            addSpare(buffer);
+            return;
+        }
+        _camera.addCallbackBuffer(buffer);
+    }
+}
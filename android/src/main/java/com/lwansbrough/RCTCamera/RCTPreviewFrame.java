@@ -0,0 +1,43 @@
+package com.lwansbrough.RCTCamera;
+
+/**
+ * A preview frame as handed to a {RCTFrameProcessor}.
+ *
+ * The data is a pooled preview buffer shared read-only between every processor of the frame.
+ */
+public class RCTPreviewFrame {
+    private final byte[] _data;
+    private final RCTFrameDescriptor _descriptor;
+    private final RCTPreviewBufferPool _bufferPool;
+    private boolean _released = false;
+
+    /**
+     * `bufferPool` is null for frames which don't come from the camera, e.g. replayed ones.
+     */
+    RCTPreviewFrame(byte[] data, RCTFrameDescriptor descriptor, RCTPreviewBufferPool bufferPool) {
+        _data = data;
+        _descriptor = descriptor;
+        _bufferPool = bufferPool;
+    }
+
+    public byte[] getData() {
+        return _data;
+    }
+
+    public RCTFrameDescriptor getDescriptor() {
+        return _descriptor;
+    }
+
+    /**
+     * Give the buffer back early, once the processor no longer reads from it. The frame is
+     * released automatically when `process` returns.
+     */
+    public void release() {
+        if (!_released) {
+            _released = true;
+            if (_bufferPool != null) {
+                _bufferPool.release(_data);
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.lwansbrough.RCTCamera;
+
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.graphics.YuvImage;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Downscales and encodes preview frames as set by `RCTPreviewFrameOptions`, into buffers reused
+ * from frame to frame. Each consumer has its own encoder, it is used on a single thread.
+ */
+class RCTPreviewFrameEncoder {
+    // downscaled frame, reused from frame to frame
+    private byte[] _scaled;
+    // JPEG output, reused from frame to frame
+    private final EncodedStream _encoded = new EncodedStream();
+
+    // output of the last `encode`
+    private byte[] _data;
+    private int _length;
+    private int _width;
+    private int _height;
+    private String _format;
+
+    /**
+     * Encode `frame`, `getData` and friends then describe the output. The frame is released as
+     * soon as the output no longer references its buffer; otherwise the output is only valid
+     * until the frame is.
+     */
+    public void encode(RCTPreviewFrame frame, RCTPreviewFrameOptions options) {
+        RCTFrameDescriptor descriptor = frame.getDescriptor();
+        byte[] data = frame.getData();
+        boolean grayscale = RCTPreviewFrameOptions.FORMAT_GRAYSCALE.equals(options.format);
+        boolean jpeg = RCTPreviewFrameOptions.FORMAT_JPEG.equals(options.format);
+
+        int width = descriptor.width;
+        int height = descriptor.height;
+        int length = data.length;
+        if (descriptor.format == ImageFormat.NV21 && options.width > 0 && options.width < width) {
+            // NV21 needs even dimensions
+            width = options.width & ~1;
+            height = Math.max(2, (descriptor.height * width / descriptor.width) & ~1);
+            length = grayscale ? width * height : width * height * 3 / 2;
+            if (_scaled == null || _scaled.length < length) {
+                _scaled = new byte[length];
+            }
+            RCTLumaUtils.scale(data, descriptor.width, descriptor.height, width, height, _scaled);
+            if (!grayscale) {
+                scaleChroma(data, descriptor.width, descriptor.height, width, height, _scaled);
+            }
+            data = _scaled;
+            frame.release();
+        } else if (grayscale && descriptor.hasLumaPlane()) {
+            length = width * height;
+        }
+
+        if (jpeg && descriptor.format == ImageFormat.NV21) {
+            _encoded.reset();
+            new YuvImage(data, ImageFormat.NV21, width, height, null).compressToJpeg(new Rect(0, 0, width, height), options.quality, _encoded);
+            frame.release();
+            data = _encoded.getBuffer();
+            length = _encoded.size();
+            _format = RCTPreviewFrameOptions.FORMAT_JPEG;
+        } else {
+            _format = length == width * height ? RCTPreviewFrameOptions.FORMAT_GRAYSCALE : RCTPreviewFrameOptions.FORMAT_RAW;
+        }
+        _data = data;
+        _length = length;
+        _width = width;
+        _height = height;
+    }
+
+    /**
+     * The encoded frame, in the first `getLength` bytes.
+     */
+    public byte[] getData() {
+        return _data;
+    }
+
+    public int getLength() {
+        return _length;
+    }
+
+    public int getWidth() {
+        return _width;
+    }
+
+    public int getHeight() {
+        return _height;
+    }
+
+    /**
+     * One of the `RCTPreviewFrameOptions` formats. Frames which aren't NV21 are always raw.
+     */
+    public String getFormat() {
+        return _format;
+    }
+
+    /**
+     * Scale the interleaved VU plane of a `dataWidth` x `dataHeight` NV21 frame to follow the
+     * `width` x `height` luma plane of `scaled`, picking the nearest pixel.
+     */
+    private static void scaleChroma(byte[] data, int dataWidth, int dataHeight, int width, int height, byte[] scaled) {
+        int dataChromaHeight = dataHeight / 2;
+        int dataChromaWidth = dataWidth / 2;
+        int chromaHeight = height / 2;
+        int chromaWidth = width / 2;
+        int dst = width * height;
+        for (int y = 0; y < chromaHeight; y++) {
+            int row = dataWidth * dataHeight + (y * dataChromaHeight / chromaHeight) * dataWidth;
+            for (int x = 0; x < chromaWidth; x++) {
+                int src = row + (x * dataChromaWidth / chromaWidth) * 2;
+                scaled[dst++] = data[src];
+                scaled[dst++] = data[src + 1];
+            }
+        }
+    }
+
+    /**
+     * Gives access to its buffer, so the encoded frame isn't copied before being exported.
+     */
+    private static class EncodedStream extends ByteArrayOutputStream {
+        byte[] getBuffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.lwansbrough.RCTCamera;
+
+/**
+ * How preview mode frames are exported to JS, see `RCTPreviewModeFrameProcessor`.
+ */
+class RCTPreviewFrameOptions {
+    // JPEG compressed frames
+    public static final String FORMAT_JPEG = "jpeg";
+    // the luma plane only, one byte per pixel
+    public static final String FORMAT_GRAYSCALE = "grayscale";
+    // the NV21 preview buffer as is
+    public static final String FORMAT_RAW = "raw";
+
+    public static final int DEFAULT_QUALITY = 70;
+    public static final RCTPreviewFrameOptions DEFAULT = new RCTPreviewFrameOptions(0, FORMAT_RAW, DEFAULT_QUALITY, 0, 0, 0);
+
+    // width frames are downscaled to, keeping the aspect ratio, 0 for the preview width
+    public final int width;
+    public final String format;
+    // JPEG quality, 0 to 100
+    public final int quality;
+    // slots of the ring file frames are written to instead of being sent over the bridge, 0 to
+    // send them over the bridge, see `RCTFrameRingBuffer`
+    public final int ringSlots;
+    // frames changing less than this since the last exported one are skipped, 0 exports every
+    // frame, see `RCTMotionGate`
+    public final float motionThreshold;
+    // milliseconds after which a frame is exported even if nothing moved, 0 for never
+    public final long keyframeInterval;
+
+    public RCTPreviewFrameOptions(int width, String format, int quality, int ringSlots, float motionThreshold, long keyframeInterval) {
+        this.width = width;
+        this.format = format;
+        this.quality = quality;
+        this.ringSlots = ringSlots;
+        this.motionThreshold = motionThreshold;
+        this.keyframeInterval = keyframeInterval;
+    }
+}
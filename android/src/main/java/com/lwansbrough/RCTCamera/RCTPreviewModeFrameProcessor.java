@@ -0,0 +1,127 @@
+package com.lwansbrough.RCTCamera;
+
+import android.util.Base64;
+import android.util.Log;
+
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exports preview frames to JS when preview mode is enabled.
+ *
+ * Frames are downscaled and encoded as set by `RCTPreviewFrameOptions` on the processing thread,
+ * so that events stay small enough for the bridge. With `ringSlots`, frames are written to a
+ * memory-mapped `RCTFrameRingBuffer` instead and only their slot is emitted. With
+ * `motionThreshold`, frames of a static scene are skipped before any of that work.
+ */
+class RCTPreviewModeFrameProcessor implements RCTFrameProcessor {
+    public static final String NAME = "previewMode";
+    private static final String TAG = "RCTPreviewModeFrameProcessor";
+    private static final String RING_FILE_PREFIX = "RCTCameraFrames-";
+    // numbers the ring files, a ring is never resized in place while a reader may have it mapped
+    private static final AtomicInteger ourRingGeneration = new AtomicInteger();
+
+    private final RCTFrameProcessorHost _host;
+    // where the ring file is created
+    private final File _cacheDir;
+    private final RCTPreviewFrameEncoder _encoder = new RCTPreviewFrameEncoder();
+    private final RCTMotionGate _motionGate = new RCTMotionGate();
+    // recreated in a new file when the slot count or the preview size changes, see `getRing`
+    private RCTFrameRingBuffer _ring;
+
+    public RCTPreviewModeFrameProcessor(RCTFrameProcessorHost host, File cacheDir) {
+        _host = host;
+        _cacheDir = cacheDir;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return RCTCamera.getInstance().isPreviewModeEnabled();
+    }
+
+    @Override
+    public void process(RCTPreviewFrame frame) {
+        RCTPreviewFrameOptions options = _host.getPreviewFrameOptions();
+        RCTFrameDescriptor descriptor = frame.getDescriptor();
+        if (options.motionThreshold > 0 && descriptor.hasLumaPlane()
+                && !_motionGate.accept(frame.getData(), descriptor.width, descriptor.height, descriptor.timestamp, options.motionThreshold, options.keyframeInterval)) {
+            _host.getFrameStats().getProcessorStats(NAME).increment("suppressedStatic");
+            return;
+        }
+        _encoder.encode(frame, options);
+        byte[] data = _encoder.getData();
+        int length = _encoder.getLength();
+
+        WritableMap event = _host.createMap();
+        if (options.ringSlots > 0) {
+            RCTFrameRingBuffer ring = getRing(options.ringSlots, descriptor);
+            if (ring == null) {
+                frame.release();
+                _host.getFrameStats().getProcessorStats(NAME).increment("ringUnavailable");
+                return;
+            }
+            int slot = ring.write(data, length, descriptor, _encoder.getWidth(), _encoder.getHeight(), getRingFormat(_encoder.getFormat()));
+            frame.release();
+            if (slot < 0) {
+                _host.getFrameStats().getProcessorStats(NAME).increment("ringOverflow");
+                return;
+            }
+            event.putString("path", ring.getPath());
+            event.putInt("slot", slot);
+            event.putInt("offset", ring.getSlotOffset(slot));
+            event.putDouble("sequence", ring.getLastSequence());
+            event.putInt("size", length);
+        } else {
+            event.putString("data", Base64.encodeToString(data, 0, length, Base64.NO_WRAP));
+            frame.release();
+        }
+        event.putString("format", _encoder.getFormat());
+        event.putInt("width", _encoder.getWidth());
+        event.putInt("height", _encoder.getHeight());
+        event.putInt("rotation", descriptor.rotation);
+
+        _host.emit("PreviewFrameReadAndroid", event);
+    }
+
+    /**
+     * The ring buffer for `slots` slots as large as the preview buffers of `descriptor`, null if it
+     * can't be mapped.
+     *
+     * A new geometry gets a new file, the event of each frame names the file it was written to.
+     * The previous file is deleted, which leaves the mappings readers already have intact.
+     */
+    private RCTFrameRingBuffer getRing(int slots, RCTFrameDescriptor descriptor) {
+        int capacity = RCTPreviewBufferPool.getBufferSize(descriptor.width, descriptor.height, descriptor.format);
+        if (_ring != null && _ring.getSlots() == slots && _ring.getCapacity() == capacity) {
+            return _ring;
+        }
+        if (_ring != null && !new File(_ring.getPath()).delete()) {
+            Log.w(TAG, "Could not delete " + _ring.getPath());
+        }
+        File file = new File(_cacheDir, RING_FILE_PREFIX + ourRingGeneration.incrementAndGet() + ".ring");
+        try {
+            _ring = new RCTFrameRingBuffer(file, slots, capacity);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not map the frame ring buffer", e);
+            _ring = null;
+        }
+        return _ring;
+    }
+
+    private static int getRingFormat(String format) {
+        if (RCTPreviewFrameOptions.FORMAT_JPEG.equals(format)) {
+            return RCTFrameRingBuffer.FORMAT_JPEG;
+        } else if (RCTPreviewFrameOptions.FORMAT_GRAYSCALE.equals(format)) {
+            return RCTFrameRingBuffer.FORMAT_GRAYSCALE;
+        }
+        return RCTFrameRingBuffer.FORMAT_RAW;
+    }
+}
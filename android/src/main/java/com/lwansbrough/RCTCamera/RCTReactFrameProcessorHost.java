@@ -0,0 +1,37 @@
+package com.lwansbrough.RCTCamera;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+/**
+ * Host of the live frame processors: settings and statistics of `RCTCamera`, events sent to JS
+ * through `DeviceEventEmitter`.
+ */
+class RCTReactFrameProcessorHost implements RCTFrameProcessorHost {
+    @Override
+    public RCTFrameStats getFrameStats() {
+        return RCTCamera.getInstance().getFrameStats();
+    }
+
+    @Override
+    public RCTPreviewFrameOptions getPreviewFrameOptions() {
+        return RCTCamera.getInstance().getPreviewFrameOptions();
+    }
+
+    @Override
+    public WritableMap createMap() {
+        return Arguments.createMap();
+    }
+
+    @Override
+    public WritableArray createArray() {
+        return Arguments.createArray();
+    }
+
+    @Override
+    public void emit(String eventName, WritableMap event) {
+        RCTCameraModule.getReactContextSingleton().getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit(eventName, event);
+    }
+}
@@ -0,0 +1,129 @@
+package com.lwansbrough.RCTCamera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.facebook.react.bridge.ReadableArray;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Replays `RCTFrameReplayTest.rctf` through the frame processors. The recording holds three
+ * 240x160 NV21 frames: a QR code reading "RCTCamera replay", a blank frame, then two QR codes
+ * reading "left" and "right" side by side.
+ */
+public class RCTFrameReplayTest {
+    private static final int FRAMES = 3;
+
+    @Test
+    public void decodesTheFirstBarcodeOfEachFrame() throws Exception {
+        RCTJavaFrameProcessorHost host = new RCTJavaFrameProcessorHost(RCTPreviewFrameOptions.DEFAULT);
+        RCTBarcodeFrameProcessor processor = new RCTBarcodeFrameProcessor(host, Arrays.asList("qr"));
+        assertEquals(FRAMES, replay(host, processor));
+
+        List<RCTJavaFrameProcessorHost.Event> events = host.getEvents();
+        assertEquals(2, events.size());
+        assertEquals("CameraBarCodeReadAndroid", events.get(0).name);
+        assertEquals("RCTCamera replay", events.get(0).body.getString("data"));
+        assertEquals("QR_CODE", events.get(0).body.getString("type"));
+        String second = events.get(1).body.getString("data");
+        assertTrue(second, "left".equals(second) || "right".equals(second));
+        assertEquals(0, host.getFrameStats().getProcessorStats(RCTBarcodeFrameProcessor.NAME).failed.get());
+    }
+
+    @Test
+    public void decodesEveryBarcodeOfAFrameInMultipleMode() throws Exception {
+        RCTJavaFrameProcessorHost host = new RCTJavaFrameProcessorHost(RCTPreviewFrameOptions.DEFAULT);
+        RCTBarcodeFrameProcessor processor = new RCTBarcodeFrameProcessor(host, Arrays.asList("qr"));
+        processor.setMultiple(true);
+        replay(host, processor);
+
+        List<RCTJavaFrameProcessorHost.Event> events = host.getEvents();
+        assertEquals(2, events.size());
+        assertEquals("CameraBarCodesReadAndroid", events.get(0).name);
+        assertEquals(Collections.singletonList("RCTCamera replay"), getTexts(events.get(0).body.getArray("barcodes")));
+        List<String> texts = getTexts(events.get(1).body.getArray("barcodes"));
+        Collections.sort(texts);
+        assertEquals(Arrays.asList("left", "right"), texts);
+        // result points are mapped back to the view, the left barcode is in its left half
+        ReadableArray barcodes = events.get(1).body.getArray("barcodes");
+        for (int i = 0; i < barcodes.size(); i++) {
+            ReadableArray points = barcodes.getMap(i).getArray("points");
+            assertTrue(points.size() >= 3);
+            boolean left = "left".equals(barcodes.getMap(i).getString("data"));
+            for (int j = 0; j < points.size(); j++) {
+                assertEquals(left, points.getMap(j).getDouble("x") < 0.5);
+            }
+        }
+    }
+
+    @Test
+    public void samplesTheLumaForTheHeartRate() throws Exception {
+        RCTJavaFrameProcessorHost host = new RCTJavaFrameProcessorHost(RCTPreviewFrameOptions.DEFAULT);
+        replay(host, new RCTHeartRateFrameProcessor(host));
+
+        List<RCTJavaFrameProcessorHost.Event> events = host.getEvents();
+        assertEquals(FRAMES, events.size());
+        // the top left corner of every frame is the 200 luma background
+        for (RCTJavaFrameProcessorHost.Event event : events) {
+            assertEquals(184, event.body.getInt("hue"));
+            assertEquals(184, event.body.getInt("saturation"));
+            assertEquals(184, event.body.getInt("brightness"));
+        }
+    }
+
+    @Test
+    public void writesDownscaledPreviewFramesToTheRing() throws Exception {
+        RCTPreviewFrameOptions options = new RCTPreviewFrameOptions(120, RCTPreviewFrameOptions.FORMAT_GRAYSCALE, RCTPreviewFrameOptions.DEFAULT_QUALITY, 2, 0, 0);
+        RCTJavaFrameProcessorHost host = new RCTJavaFrameProcessorHost(options);
+        File cacheDir = new File(System.getProperty("java.io.tmpdir"));
+        replay(host, new RCTPreviewModeFrameProcessor(host, cacheDir));
+
+        // an event for every frame, so none was larger than a slot
+        List<RCTJavaFrameProcessorHost.Event> events = host.getEvents();
+        assertEquals(FRAMES, events.size());
+        RCTJavaFrameProcessorHost.JavaMap last = events.get(FRAMES - 1).body;
+        assertEquals(RCTPreviewFrameOptions.FORMAT_GRAYSCALE, last.getString("format"));
+        assertEquals(120, last.getInt("width"));
+        assertEquals(80, last.getInt("height"));
+        assertEquals(120 * 80, last.getInt("size"));
+
+        File file = new File(last.getString("path"));
+        RandomAccessFile ring = new RandomAccessFile(file, "r");
+        try {
+            // little endian
+            assertEquals(RCTFrameRingBuffer.MAGIC, Integer.reverseBytes(ring.readInt()));
+            ring.seek(last.getInt("offset"));
+            assertEquals(FRAMES - 1, Long.reverseBytes(ring.readLong()));
+        } finally {
+            ring.close();
+            file.delete();
+        }
+    }
+
+    private static int replay(RCTJavaFrameProcessorHost host, RCTFrameProcessor processor) throws Exception {
+        RCTFrameReplaySource source = new RCTFrameReplaySource(getRecording(), host.getFrameStats());
+        source.addFrameProcessor(processor);
+        return source.replay(false);
+    }
+
+    private static File getRecording() throws URISyntaxException {
+        return new File(RCTFrameReplayTest.class.getResource("/RCTFrameReplayTest.rctf").toURI());
+    }
+
+    private static List<String> getTexts(ReadableArray barcodes) {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < barcodes.size(); i++) {
+            texts.add(barcodes.getMap(i).getString("data"));
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,98 @@
+package com.lwansbrough.RCTCamera;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Replays a frame recording through the frame processors off device, for regression runs:
+ *
+ *     java -cp <unit test classpath> com.lwansbrough.RCTCamera.RCTFrameReplayTool recording.rctf \
+ *         [--barcode[=qr,ean13,...]] [--multiple] [--preview=<format>[,<width>[,<ringSlots>]]] \
+ *         [--heart-rate]
+ *
+ * Prints every event the processors emitted, one per line as JSON, then the stats of each
+ * processor. Without any processor option, replays through the barcode processor, which looks
+ * for every barcode type unless given some.
+ *
+ * The barcode and heart rate processors are plain Java. Preview mode base64 encodes its frames,
+ * and encodes JPEG, with the Android framework: replay it with `ringSlots`, which writes the
+ * frames to a ring file in the temporary dir, and a raw or grayscale format.
+ */
+class RCTFrameReplayTool {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: RCTFrameReplayTool <recording> [--barcode[=types]] [--multiple] [--preview=format[,width[,ringSlots]]] [--heart-rate]");
+            System.exit(2);
+        }
+        boolean barcode = false;
+        List<String> barCodeTypes = null;
+        boolean multiple = false;
+        RCTPreviewFrameOptions previewFrameOptions = null;
+        boolean heartRate = false;
+        for (int i = 1; i < args.length; i++) {
+            if ("--multiple".equals(args[i])) {
+                multiple = true;
+            } else if ("--barcode".equals(args[i])) {
+                barcode = true;
+            } else if (args[i].startsWith("--barcode=")) {
+                barcode = true;
+                barCodeTypes = Arrays.asList(args[i].substring("--barcode=".length()).split(","));
+            } else if (args[i].startsWith("--preview=")) {
+                previewFrameOptions = parsePreviewFrameOptions(args[i].substring("--preview=".length()));
+            } else if ("--heart-rate".equals(args[i])) {
+                heartRate = true;
+            } else {
+                System.err.println("unknown option " + args[i]);
+                System.exit(2);
+            }
+        }
+        if (previewFrameOptions == null && !heartRate) {
+            barcode = true;
+        }
+
+        RCTJavaFrameProcessorHost host = new RCTJavaFrameProcessorHost(previewFrameOptions == null ? RCTPreviewFrameOptions.DEFAULT : previewFrameOptions);
+        RCTFrameReplaySource source = new RCTFrameReplaySource(new File(args[0]), host.getFrameStats());
+        List<RCTFrameProcessor> processors = new ArrayList<>();
+        if (barcode) {
+            RCTBarcodeFrameProcessor processor = new RCTBarcodeFrameProcessor(host, barCodeTypes);
+            processor.setMultiple(multiple);
+            processors.add(processor);
+        }
+        if (previewFrameOptions != null) {
+            processors.add(new RCTPreviewModeFrameProcessor(host, new File(System.getProperty("java.io.tmpdir"))));
+        }
+        if (heartRate) {
+            processors.add(new RCTHeartRateFrameProcessor(host));
+        }
+        for (RCTFrameProcessor processor : processors) {
+            source.addFrameProcessor(processor);
+        }
+        int frames = source.replay(false);
+
+        for (RCTJavaFrameProcessorHost.Event event : host.getEvents()) {
+            System.out.println(event);
+        }
+        System.out.println("frames " + frames);
+        long failed = 0;
+        for (RCTFrameProcessor processor : processors) {
+            RCTFrameStats.ProcessorStats stats = host.getFrameStats().getProcessorStats(processor.getName());
+            System.out.println(processor.getName() + ": processed " + stats.processed.get() + ", failed " + stats.failed.get()
+                    + ", p50 " + stats.processingTime.getPercentileMicros(0.5) + "us"
+                    + ", p99 " + stats.processingTime.getPercentileMicros(0.99) + "us");
+            failed += stats.failed.get();
+        }
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    /**
+     * `<format>[,<width>[,<ringSlots>]]`, e.g. `grayscale,160,4`.
+     */
+    private static RCTPreviewFrameOptions parsePreviewFrameOptions(String value) {
+        String[] parts = value.split(",");
+        int width = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+        int ringSlots = parts.length > 2 ? Integer.parseInt(parts[2]) : 0;
+        return new RCTPreviewFrameOptions(width, parts[0], RCTPreviewFrameOptions.DEFAULT_QUALITY, ringSlots, 0, 0);
+    }
+}
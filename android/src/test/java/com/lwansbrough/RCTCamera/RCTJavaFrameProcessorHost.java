@@ -0,0 +1,316 @@
+package com.lwansbrough.RCTCamera;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Host of frame processors run without React, e.g. by `RCTFrameReplayTool`: events are plain
+ * Java maps and arrays, collected in the order they were emitted.
+ */
+class RCTJavaFrameProcessorHost implements RCTFrameProcessorHost {
+    /**
+     * An emitted event.
+     */
+    static class Event {
+        final String name;
+        final JavaMap body;
+
+        Event(String name, JavaMap body) {
+            this.name = name;
+            this.body = body;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + body;
+        }
+    }
+
+    private final RCTFrameStats _frameStats = new RCTFrameStats();
+    private final RCTPreviewFrameOptions _previewFrameOptions;
+    private final List<Event> _events = new ArrayList<>();
+
+    public RCTJavaFrameProcessorHost(RCTPreviewFrameOptions previewFrameOptions) {
+        _previewFrameOptions = previewFrameOptions;
+    }
+
+    @Override
+    public RCTFrameStats getFrameStats() {
+        return _frameStats;
+    }
+
+    @Override
+    public RCTPreviewFrameOptions getPreviewFrameOptions() {
+        return _previewFrameOptions;
+    }
+
+    @Override
+    public WritableMap createMap() {
+        return new JavaMap();
+    }
+
+    @Override
+    public WritableArray createArray() {
+        return new JavaArray();
+    }
+
+    @Override
+    public synchronized void emit(String eventName, WritableMap event) {
+        _events.add(new Event(eventName, (JavaMap) event));
+    }
+
+    public synchronized List<Event> getEvents() {
+        return new ArrayList<>(_events);
+    }
+
+    private static ReadableType getType(Object value) {
+        if (value == null) {
+            return ReadableType.Null;
+        } else if (value instanceof Boolean) {
+            return ReadableType.Boolean;
+        } else if (value instanceof Number) {
+            return ReadableType.Number;
+        } else if (value instanceof String) {
+            return ReadableType.String;
+        } else if (value instanceof ReadableMap) {
+            return ReadableType.Map;
+        }
+        return ReadableType.Array;
+    }
+
+    private static void appendJson(StringBuilder json, Object value) {
+        if (value instanceof String) {
+            json.append('"').append(((String) value).replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        } else {
+            json.append(value);
+        }
+    }
+
+    static class JavaMap implements WritableMap {
+        private final LinkedHashMap<String, Object> _values = new LinkedHashMap<>();
+
+        @Override
+        public boolean hasKey(String name) {
+            return _values.containsKey(name);
+        }
+
+        @Override
+        public boolean isNull(String name) {
+            return _values.get(name) == null;
+        }
+
+        @Override
+        public boolean getBoolean(String name) {
+            return (Boolean) _values.get(name);
+        }
+
+        @Override
+        public double getDouble(String name) {
+            return ((Number) _values.get(name)).doubleValue();
+        }
+
+        @Override
+        public int getInt(String name) {
+            return ((Number) _values.get(name)).intValue();
+        }
+
+        @Override
+        public String getString(String name) {
+            return (String) _values.get(name);
+        }
+
+        @Override
+        public ReadableArray getArray(String name) {
+            return (ReadableArray) _values.get(name);
+        }
+
+        @Override
+        public ReadableMap getMap(String name) {
+            return (ReadableMap) _values.get(name);
+        }
+
+        @Override
+        public ReadableType getType(String name) {
+            return RCTJavaFrameProcessorHost.getType(_values.get(name));
+        }
+
+        @Override
+        public ReadableMapKeySetIterator keySetIterator() {
+            final Iterator<String> keys = _values.keySet().iterator();
+            return new ReadableMapKeySetIterator() {
+                @Override
+                public boolean hasNextKey() {
+                    return keys.hasNext();
+                }
+
+                @Override
+                public String nextKey() {
+                    return keys.next();
+                }
+            };
+        }
+
+        @Override
+        public void putNull(String key) {
+            _values.put(key, null);
+        }
+
+        @Override
+        public void putBoolean(String key, boolean value) {
+            _values.put(key, value);
+        }
+
+        @Override
+        public void putDouble(String key, double value) {
+            _values.put(key, value);
+        }
+
+        @Override
+        public void putInt(String key, int value) {
+            _values.put(key, value);
+        }
+
+        @Override
+        public void putString(String key, String value) {
+            _values.put(key, value);
+        }
+
+        @Override
+        public void putArray(String key, WritableArray value) {
+            _values.put(key, value);
+        }
+
+        @Override
+        public void putMap(String key, WritableMap value) {
+            _values.put(key, value);
+        }
+
+        @Override
+        public void merge(ReadableMap source) {
+            _values.putAll(((JavaMap) source)._values);
+        }
+
+        /**
+         * JSON, to compare the events of runs.
+         */
+        @Override
+        public String toString() {
+            StringBuilder json = new StringBuilder("{");
+            for (Map.Entry<String, Object> entry : _values.entrySet()) {
+                if (json.length() > 1) {
+                    json.append(',');
+                }
+                appendJson(json, entry.getKey());
+                json.append(':');
+                appendJson(json, entry.getValue());
+            }
+            return json.append('}').toString();
+        }
+    }
+
+    static class JavaArray implements WritableArray {
+        private final ArrayList<Object> _values = new ArrayList<>();
+
+        @Override
+        public int size() {
+            return _values.size();
+        }
+
+        @Override
+        public boolean isNull(int index) {
+            return _values.get(index) == null;
+        }
+
+        @Override
+        public boolean getBoolean(int index) {
+            return (Boolean) _values.get(index);
+        }
+
+        @Override
+        public double getDouble(int index) {
+            return ((Number) _values.get(index)).doubleValue();
+        }
+
+        @Override
+        public int getInt(int index) {
+            return ((Number) _values.get(index)).intValue();
+        }
+
+        @Override
+        public String getString(int index) {
+            return (String) _values.get(index);
+        }
+
+        @Override
+        public ReadableArray getArray(int index) {
+            return (ReadableArray) _values.get(index);
+        }
+
+        @Override
+        public ReadableMap getMap(int index) {
+            return (ReadableMap) _values.get(index);
+        }
+
+        @Override
+        public ReadableType getType(int index) {
+            return RCTJavaFrameProcessorHost.getType(_values.get(index));
+        }
+
+        @Override
+        public void pushNull() {
+            _values.add(null);
+        }
+
+        @Override
+        public void pushBoolean(boolean value) {
+            _values.add(value);
+        }
+
+        @Override
+        public void pushDouble(double value) {
+            _values.add(value);
+        }
+
+        @Override
+        public void pushInt(int value) {
+            _values.add(value);
+        }
+
+        @Override
+        public void pushString(String value) {
+            _values.add(value);
+        }
+
+        @Override
+        public void pushArray(WritableArray array) {
+            _values.add(array);
+        }
+
+        @Override
+        public void pushMap(WritableMap map) {
+            _values.add(map);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder json = new StringBuilder("[");
+            for (int i = 0; i < _values.size(); i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                appendJson(json, _values.get(i));
+            }
+            return json.append(']').toString();
+        }
+    }
+}
@@ -11,6 +11,7 @@ import {
 
 const CameraManager = NativeModules.CameraManager || NativeModules.CameraModule;
 const CAMERA_REF = 'camera';
+let nextDecodeBarcodesId = 0;
 
 function convertNativeProps(props) {
   const newProps = { ...props };
@@ -47,11 +48,12 @@ function convertNativeProps(props) {
   }
 
   // do not register barCodeTypes if no barcode listener
-  if (typeof props.onBarCodeRead !== 'function') {
+  if (typeof props.onBarCodeRead !== 'function' && typeof props.onBarCodesRead !== 'function') {
     newProps.barCodeTypes = [];
   }
 
-  newProps.barcodeScannerEnabled = typeof props.onBarCodeRead === 'function'
+  newProps.barcodeScannerEnabled = typeof props.onBarCodeRead === 'function' || typeof props.onBarCodesRead === 'function'
+  newProps.barCodeMultiple = typeof props.onBarCodesRead === 'function'
 
 
   if (typeof props.onPreviewFrameRead === 'function') {
@@ -106,9 +108,35 @@ export default class Camera extends Component {
     keepAwake: PropTypes.bool,
     onPreviewFrameRead: PropTypes.func,
     onBarCodeRead: PropTypes.func,
+    onBarCodesRead: PropTypes.func,
     barcodeScannerEnabled: PropTypes.bool,
     previewModeEnabled: PropTypes.bool,
     heartRateModeEnabled: PropTypes.bool,
+    barCodeScanRate: PropTypes.number,
+    barCodeDeduplicationInterval: PropTypes.number,
+    barCodeQualityThresholds: PropTypes.shape({
+      minSharpness: PropTypes.number,
+      minLuma: PropTypes.number,
+      maxLuma: PropTypes.number
+    }),
+    barCodeScanArea: PropTypes.shape({
+      x: PropTypes.number,
+      y: PropTypes.number,
+      width: PropTypes.number,
+      height: PropTypes.number
+    }),
+    previewFrameRate: PropTypes.number,
+    previewFrameOptions: PropTypes.shape({
+      width: PropTypes.number,
+      format: PropTypes.oneOf(['jpeg', 'grayscale', 'raw']),
+      quality: PropTypes.number,
+      ringSlots: PropTypes.number,
+      motionThreshold: PropTypes.number,
+      keyframeInterval: PropTypes.number
+    }),
+    heartRateSampleRate: PropTypes.number,
+    frameStatsInterval: PropTypes.number,
+    onFrameStats: PropTypes.func,
     onFocusChanged: PropTypes.func,
     onZoomChanged: PropTypes.func,
     mirrorImage: PropTypes.bool,
@@ -148,6 +176,58 @@ export default class Camera extends Component {
   static checkVideoAuthorizationStatus = CameraManager.checkVideoAuthorizationStatus;
   static checkAudioAuthorizationStatus = CameraManager.checkAudioAuthorizationStatus;
 
+  static startFrameServer(options = {}) {
+    if (Platform.OS !== 'android') {
+      return Promise.reject(new Error('startFrameServer is only supported on Android'))
+    }
+    return CameraManager.startFrameServer(options)
+  }
+
+  static stopFrameServer() {
+    if (Platform.OS !== 'android') {
+      return Promise.resolve()
+    }
+    return CameraManager.stopFrameServer()
+  }
+
+  static startFrameRecording(options = {}) {
+    if (Platform.OS !== 'android') {
+      return Promise.reject(new Error('startFrameRecording is only supported on Android'))
+    }
+    return CameraManager.startFrameRecording(options)
+  }
+
+  static stopFrameRecording() {
+    if (Platform.OS !== 'android') {
+      return Promise.resolve({ frames: 0 })
+    }
+    return CameraManager.stopFrameRecording()
+  }
+
+  static decodeBarcodes(paths, options = {}, onFileDecoded) {
+    if (Platform.OS !== 'android') {
+      return Promise.reject(new Error('decodeBarcodes is only supported on Android'))
+    }
+    const id = String(nextDecodeBarcodesId++)
+    const listener = onFileDecoded && DeviceEventEmitter.addListener('CameraBarCodeFileDecodedAndroid', (event) => {
+      if (event.id === id) {
+        onFileDecoded(event)
+      }
+    })
+    const removeListener = () => {
+      if (listener) {
+        listener.remove()
+      }
+    }
+    return CameraManager.decodeBarcodes(paths, { ...options, id }).then((result) => {
+      removeListener()
+      return result
+    }, (error) => {
+      removeListener()
+      throw error
+    })
+  }
+
   setNativeProps(props) {
     this.refs[CAMERA_REF].setNativeProps(props);
   }
@@ -162,7 +242,9 @@ export default class Camera extends Component {
 
   async componentWillMount() {
     this._addOnBarCodeReadListener()
+    this._addOnBarCodesReadListener()
     this._addOnPreviewFrameReadListener()
+    this._addOnFrameStatsListener()
 
     let { captureMode } = convertNativeProps({ captureMode: this.props.captureMode })
     let hasVideoAndAudio = this.props.captureAudio && captureMode === Camera.constants.CaptureMode.video
@@ -176,7 +258,9 @@ export default class Camera extends Component {
 
   componentWillUnmount() {
     this._removeOnBarCodeReadListener()
+    this._removeOnBarCodesReadListener()
     this._removeOnPreviewFrameReadListener()
+    this._removeOnFrameStatsListener()
 
     if (this.state.isRecording) {
       this.stopCapture();
@@ -184,13 +268,19 @@ export default class Camera extends Component {
   }
 
   componentWillReceiveProps(newProps) {
-    const { onBarCodeRead, onPreviewFrameRead } = this.props
+    const { onBarCodeRead, onBarCodesRead, onPreviewFrameRead, onFrameStats } = this.props
     if (onBarCodeRead && !newProps.onBarCodeRead) {
       this._addOnBarCodeReadListener(newProps)
     }
+    if (onBarCodesRead && !newProps.onBarCodesRead) {
+      this._addOnBarCodesReadListener(newProps)
+    }
     if (onPreviewFrameRead && !newProps.onPreviewFrameRead) {
       this._addOnPreviewFrameReadListener(newProps)
     }
+    if (onFrameStats && !newProps.onFrameStats) {
+      this._addOnFrameStatsListener(newProps)
+    }
   }
 
   _addOnBarCodeReadListener(props) {
@@ -210,6 +300,20 @@ export default class Camera extends Component {
     }
   }
 
+  _addOnBarCodesReadListener(props) {
+    const { onBarCodesRead } = props || this.props
+    this._removeOnBarCodesReadListener()
+    if (onBarCodesRead && Platform.OS === 'android') {
+      this.cameraBarCodesReadListener = DeviceEventEmitter.addListener('CameraBarCodesReadAndroid', this._onBarCodesRead)
+    }
+  }
+  _removeOnBarCodesReadListener() {
+    const listener = this.cameraBarCodesReadListener
+    if (listener) {
+      listener.remove()
+    }
+  }
+
   _addOnPreviewFrameReadListener(props) {
     const { onPreviewFrameRead } = props || this.props
     this._removeOnPreviewFrameReadListener()
@@ -227,6 +331,20 @@ export default class Camera extends Component {
     }
   }
 
+  _addOnFrameStatsListener(props) {
+    const { onFrameStats } = props || this.props
+    this._removeOnFrameStatsListener()
+    if (onFrameStats && Platform.OS === 'android') {
+      this.cameraFrameStatsListener = DeviceEventEmitter.addListener('CameraStats', this._onFrameStats)
+    }
+  }
+  _removeOnFrameStatsListener() {
+    const listener = this.cameraFrameStatsListener
+    if (listener) {
+      listener.remove()
+    }
+  }
+
   render() {
     const style = [styles.base, this.props.style];
     const nativeProps = convertNativeProps(this.props);
@@ -240,6 +358,12 @@ export default class Camera extends Component {
     }
   };
 
+  _onBarCodesRead = (data) => {
+    if (this.props.onBarCodesRead) {
+      this.props.onBarCodesRead(data)
+    }
+  };
+
   _onPreviewFrameRead = (data) => {
     // console.log("onpreviewframeread called!")
     if (this.props.onPreviewFrameRead) {
@@ -247,6 +371,12 @@ export default class Camera extends Component {
     }
   };
 
+  _onFrameStats = (data) => {
+    if (this.props.onFrameStats) {
+      this.props.onFrameStats(data)
+    }
+  };
+
   capture(options) {
     const props = convertNativeProps(this.props);
     options = {
@@ -284,6 +414,13 @@ export default class Camera extends Component {
     return CameraManager.getFOV();
   }
 
+  getFrameStats() {
+    if (Platform.OS !== 'android') {
+      return Promise.reject(new Error('getFrameStats is only supported on Android'));
+    }
+    return CameraManager.getFrameStats();
+  }
+
   hasFlash() {
     if (Platform.OS === 'android') {
       const props = convertNativeProps(this.props);